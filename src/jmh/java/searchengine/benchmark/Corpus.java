@@ -0,0 +1,66 @@
+package searchengine.benchmark;
+
+import org.jsoup.Jsoup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Страницы для бенчмарков. По умолчанию берутся из src/jmh/resources/corpus (список в index.txt),
+ * а с -Dcorpus.dir=... - все *.html из указанного каталога, например сохранённые страницы реальных сайтов.
+ */
+public class Corpus {
+
+    private static final String CORPUS_DIR_PROPERTY = "corpus.dir";
+
+    private Corpus() {
+
+    }
+
+    public static List<String> loadHtml() {
+        String dir = System.getProperty(CORPUS_DIR_PROPERTY);
+        try {
+            return dir == null ? loadFromClasspath() : loadFromDirectory(Path.of(dir));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static List<String> loadText() {
+        return loadHtml().stream()
+                .map(html -> Jsoup.parse(html).text())
+                .toList();
+    }
+
+    private static List<String> loadFromClasspath() throws IOException {
+        List<String> pages = new ArrayList<>();
+        for (String name : read("corpus/index.txt").split("\\s+")) {
+            if (!name.isBlank()) pages.add(read("corpus/" + name));
+        }
+        return pages;
+    }
+
+    private static List<String> loadFromDirectory(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            List<String> pages = new ArrayList<>();
+            for (Path file : files.filter(path -> path.toString().endsWith(".html")).sorted().toList()) {
+                pages.add(Files.readString(file, StandardCharsets.UTF_8));
+            }
+            return pages;
+        }
+    }
+
+    private static String read(String resource) throws IOException {
+        try (InputStream in = Corpus.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in == null) throw new IOException("Не найден ресурс " + resource);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
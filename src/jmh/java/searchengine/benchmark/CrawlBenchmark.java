@@ -0,0 +1,107 @@
+package searchengine.benchmark;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.context.ConfigurableApplicationContext;
+import searchengine.dto.Response;
+import searchengine.model.Site;
+import searchengine.model.Status;
+import searchengine.repository.PageRepository;
+import searchengine.repository.SiteRepository;
+import searchengine.services.IndexingService;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.StreamSupport;
+
+import static searchengine.benchmark.EmbeddedApplication.doubleOption;
+import static searchengine.benchmark.EmbeddedApplication.intOption;
+import static searchengine.benchmark.EmbeddedApplication.parseOptions;
+
+/**
+ * Бенчмарк обхода без сети: полная индексация ({@link IndexingService#startIndexing}) сайта {@link MockSite},
+ * поднятого в этом же процессе, с записью во встроенную H2.
+ * <p>
+ * Запуск: mvn -Pbenchmark compile exec:exec -Dbench.main=searchengine.benchmark.CrawlBenchmark
+ * -Dbench.args="pages=2000 fanout=8 latency=20 errors=0.02"
+ * <p>
+ * Параметры: pages (размер сайта), fanout (ссылок на потомков со страницы), latency (задержка ответа, мс),
+ * errors (доля страниц с ответом 500), words (слов на странице), delay (пауза обходчика перед загрузкой, мс),
+ * db (путь к файлу H2).
+ */
+public class CrawlBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int pages = intOption(options, "pages", 2000);
+        int fanOut = intOption(options, "fanout", 8);
+        int latency = intOption(options, "latency", 20);
+        double errors = doubleOption(options, "errors", 0.02);
+        int words = intOption(options, "words", 200);
+        int delay = intOption(options, "delay", 0);
+        String db = options.getOrDefault("db", "./target/loadtest/crawl");
+
+        try (MockSite site = new MockSite(pages, fanOut, latency, errors, words);
+             ConfigurableApplicationContext context = EmbeddedApplication.start(db, false,
+                     "--indexing-settings.sites[0].url=" + site.getUrl(),
+                     "--indexing-settings.sites[0].name=Mock site",
+                     "--indexing-settings.crawl-delay-millis=" + delay,
+                     "--spring.jpa.properties.hibernate.generate_statistics=true")) {
+            Statistics statistics = context.getBean(EntityManagerFactory.class)
+                    .unwrap(SessionFactory.class).getStatistics();
+            SiteRepository siteRepository = context.getBean(SiteRepository.class);
+
+            System.gc();
+            statistics.clear();
+            AtomicLong peakHeap = new AtomicLong();
+            MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+            ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+            sampler.scheduleAtFixedRate(() -> peakHeap.accumulateAndGet(
+                    memory.getHeapMemoryUsage().getUsed(), Math::max), 0, 50, TimeUnit.MILLISECONDS);
+
+            long start = System.nanoTime();
+            Response response = context.getBean(IndexingService.class).startIndexing();
+            if (!response.isResult()) {
+                throw new IllegalStateException(response.getError());
+            }
+            List<Site> sites = awaitCompletion(siteRepository);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            sampler.shutdownNow();
+
+            long saved = context.getBean(PageRepository.class).count();
+            System.out.printf("Сайт: %d страниц, ветвление %d, задержка %d мс, ошибки %.0f%%%n",
+                    pages, fanOut, latency, errors * 100);
+            sites.forEach(s -> System.out.printf("Статус: %s%s%n", s.getStatus(),
+                    s.getLastError() == null ? "" : " (" + s.getLastError() + ")"));
+            System.out.printf("Сохранено страниц: %d за %.1f с, %.1f стр/с%n", saved, seconds, saved / seconds);
+            System.out.printf("Запросов к сайту: %d, разных адресов: %d, загрузок на страницу: %.2f%n",
+                    site.getRequests(), site.getFetchedPages(),
+                    (double) site.getRequests() / Math.max(site.getFetchedPages(), 1));
+            System.out.printf("Пиковое использование кучи: %.1f МБ%n", peakHeap.get() / 1024.0 / 1024.0);
+            System.out.printf("SQL-запросов: %d (%.1f на страницу), запросов JPQL: %d, вставок: %d, обновлений: %d, удалений: %d%n",
+                    statistics.getPrepareStatementCount(),
+                    (double) statistics.getPrepareStatementCount() / Math.max(saved, 1),
+                    statistics.getQueryExecutionCount(), statistics.getEntityInsertCount(),
+                    statistics.getEntityUpdateCount(), statistics.getEntityDeleteCount());
+        }
+        // Пул потоков индексации не daemon и сам не завершится
+        System.exit(0);
+    }
+
+    private static List<Site> awaitCompletion(SiteRepository siteRepository) throws InterruptedException {
+        while (true) {
+            TimeUnit.MILLISECONDS.sleep(200);
+            List<Site> sites = StreamSupport.stream(siteRepository.findAll().spliterator(), false).toList();
+            if (!sites.isEmpty() && sites.stream().noneMatch(site -> site.getStatus() == Status.INDEXING)) {
+                return sites;
+            }
+        }
+    }
+}
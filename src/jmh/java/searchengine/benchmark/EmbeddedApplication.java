@@ -0,0 +1,51 @@
+package searchengine.benchmark;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import searchengine.Application;
+
+import java.util.*;
+
+/**
+ * Запуск приложения для бенчмарков: без веб-сервера, на встроенной H2 в режиме совместимости с MySQL.
+ * Параметры бенчмарков передаются как key=value.
+ */
+class EmbeddedApplication {
+
+    private EmbeddedApplication() {
+    }
+
+    static ConfigurableApplicationContext start(String db, boolean reuse, String... extraArgs) {
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.main.web-application-type=none",
+                "--spring.main.banner-mode=off",
+                "--spring.datasource.url=jdbc:h2:file:" + db + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=RANK",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--spring.jpa.hibernate.ddl-auto=" + (reuse ? "update" : "create"),
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN"
+        ));
+        args.addAll(List.of(extraArgs));
+        return SpringApplication.run(Application.class, args.toArray(String[]::new));
+    }
+
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] pair = arg.split("=", 2);
+            options.put(pair[0], pair.length > 1 ? pair[1] : "");
+        }
+        return options;
+    }
+
+    static int intOption(Map<String, String> options, String name, int defaultValue) {
+        return options.containsKey(name) ? Integer.parseInt(options.get(name)) : defaultValue;
+    }
+
+    static double doubleOption(Map<String, String> options, String name, double defaultValue) {
+        return options.containsKey(name) ? Double.parseDouble(options.get(name)) : defaultValue;
+    }
+}
@@ -0,0 +1,81 @@
+package searchengine.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import searchengine.utils.LemmaAnalyzer;
+import searchengine.utils.LemmaFinder;
+import searchengine.utils.LemmaFinderEn;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Лемматизация всего корпуса: построение множества лемм (как для запроса)
+ * и подсчёт лемм страницы (как при индексации), в том числе одной очень большой страницы.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LemmatizationBenchmark {
+
+    private LemmaFinder lemmaFinder;
+    private LemmaFinderEn lemmaFinderEn;
+    private LemmaAnalyzer lemmaAnalyzer;
+    private List<String> texts;
+    // Весь корпус, повторённый до размера большого каталога - для параллельного подсчёта
+    private String largeText;
+
+    @Setup
+    public void setUp() throws IOException {
+        lemmaFinder = LemmaFinder.getInstance();
+        lemmaFinderEn = LemmaFinderEn.getInstance();
+        lemmaAnalyzer = LemmaAnalyzer.getInstance();
+        texts = Corpus.loadText();
+        largeText = (String.join(" ", texts) + " ").repeat(20);
+    }
+
+    @Benchmark
+    public void russianLemmaSet(Blackhole blackhole) {
+        for (String text : texts) {
+            blackhole.consume(lemmaFinder.getLemmaSet(text));
+        }
+    }
+
+    @Benchmark
+    public void englishLemmaSet(Blackhole blackhole) {
+        for (String text : texts) {
+            blackhole.consume(lemmaFinderEn.getLemmaSet(text));
+        }
+    }
+
+    @Benchmark
+    public void russianCollectLemmas(Blackhole blackhole) {
+        for (String text : texts) {
+            blackhole.consume(lemmaFinder.collectLemmasFromText(text));
+        }
+    }
+
+    @Benchmark
+    public void englishCollectLemmas(Blackhole blackhole) {
+        for (String text : texts) {
+            blackhole.consume(lemmaFinderEn.collectLemmasFromText(text));
+        }
+    }
+
+    @Benchmark
+    public void russianCollectLemmasLargePage(Blackhole blackhole) {
+        blackhole.consume(lemmaFinder.collectLemmasFromText(largeText));
+    }
+
+    // Индексация страницы: оба языка за один проход
+    @Benchmark
+    public void analyzerCollectLemmas(Blackhole blackhole) {
+        for (String text : texts) {
+            blackhole.consume(lemmaAnalyzer.collectLemmaIds(text));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package searchengine.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Сайт в памяти для бенчмарка обхода. Страница /page/i ссылается на своих потомков в дереве
+ * с ветвлением fanOut и на столько же случайных страниц, так что обходчик встречает повторные ссылки.
+ * Заданная доля страниц отвечает 500, каждый ответ задерживается на latencyMillis.
+ */
+class MockSite implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final String[] texts;
+    private final int fanOut;
+    private final long latencyMillis;
+    private final double errorRate;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final Set<String> fetchedPaths = ConcurrentHashMap.newKeySet();
+
+    MockSite(int size, int fanOut, long latencyMillis, double errorRate, int words) throws IOException {
+        this.fanOut = fanOut;
+        this.latencyMillis = latencyMillis;
+        this.errorRate = errorRate;
+
+        SyntheticCorpus corpus = new SyntheticCorpus(11);
+        texts = new String[size];
+        for (int i = 0; i < size; i++) {
+            texts[i] = corpus.page("", i, words).getText();
+        }
+
+        executor = Executors.newFixedThreadPool(64);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    long getRequests() {
+        return requests.get();
+    }
+
+    int getFetchedPages() {
+        return fetchedPaths.size();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        String path = exchange.getRequestURI().getPath();
+        fetchedPaths.add(path);
+        try {
+            if (latencyMillis > 0) Thread.sleep(latencyMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        int number = pageNumber(path);
+        if (number < 0 || number >= texts.length) {
+            respond(exchange, 404, "<html><body>Not found</body></html>");
+        } else if (number > 0 && new Random(number).nextDouble() < errorRate) {
+            respond(exchange, 500, "<html><body>Internal error</body></html>");
+        } else {
+            respond(exchange, 200, html(number));
+        }
+    }
+
+    private String html(int number) {
+        StringBuilder html = new StringBuilder("<html><head><title>Page ")
+                .append(number).append("</title></head><body><p>").append(texts[number]).append("</p><ul>");
+        Random random = new Random(number);
+        for (int i = 1; i <= fanOut; i++) {
+            int child = number * fanOut + i;
+            if (child < texts.length) appendLink(html, child);
+            appendLink(html, random.nextInt(texts.length));
+        }
+        return html.append("</ul></body></html>").toString();
+    }
+
+    private static void appendLink(StringBuilder html, int number) {
+        html.append("<li><a href=\"").append(number == 0 ? "/" : "/page/" + number).append("\">")
+                .append(number).append("</a></li>");
+    }
+
+    private static int pageNumber(String path) {
+        if (path.equals("/")) return 0;
+        if (!path.startsWith("/page/")) return -1;
+        try {
+            return Integer.parseInt(path.substring("/page/".length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int code, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,153 @@
+package searchengine.benchmark;
+
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.model.Site;
+import searchengine.model.Status;
+import searchengine.repository.SiteRepository;
+import searchengine.services.SearchService;
+import searchengine.services.impl.IndexingServiceImpl;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static searchengine.benchmark.EmbeddedApplication.intOption;
+import static searchengine.benchmark.EmbeddedApplication.parseOptions;
+
+/**
+ * Нагрузочный тест поиска без сети и MySQL.
+ * <p>
+ * Генерирует sites x pages синтетических страниц, записывает их во встроенную H2 (режим MySQL)
+ * тем же путём, что и обход ({@link IndexingServiceImpl#savePage}), затем прогоняет журнал запросов
+ * через {@link SearchService#search} в несколько потоков и печатает p50/p95/p99 и QPS.
+ * <p>
+ * Запуск: mvn -Pbenchmark compile exec:exec -Dbench.main=searchengine.benchmark.SearchLoadTest
+ * -Dbench.args="sites=4 pages=2500 concurrency=8 requests=2000"
+ * <p>
+ * Параметры: sites, pages (на сайт), words (слов на странице), queries (файл, по запросу в строке),
+ * requests, warmup, concurrency, db (путь к файлу H2), reuse (не загружать корпус, взять готовую БД).
+ */
+public class SearchLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int sites = intOption(options, "sites", 2);
+        int pages = intOption(options, "pages", 1000);
+        int words = intOption(options, "words", 300);
+        int requests = intOption(options, "requests", 1000);
+        int warmup = intOption(options, "warmup", Math.min(100, requests / 10));
+        int concurrency = intOption(options, "concurrency", Runtime.getRuntime().availableProcessors());
+        String db = options.getOrDefault("db", "./target/loadtest/search");
+        boolean reuse = options.containsKey("reuse");
+
+        SyntheticCorpus corpus = new SyntheticCorpus(42);
+        try (ConfigurableApplicationContext context = EmbeddedApplication.start(db, reuse)) {
+            if (!reuse) {
+                load(context, corpus, sites, pages, words);
+            }
+            List<String> queries = options.containsKey("queries")
+                    ? Files.readAllLines(Path.of(options.get("queries")), StandardCharsets.UTF_8).stream()
+                            .filter(line -> !line.isBlank()).toList()
+                    : generateQueries(corpus, 200);
+            replay(context, queries, requests, warmup, concurrency);
+        }
+    }
+
+    private static void load(ConfigurableApplicationContext context, SyntheticCorpus corpus,
+                             int sites, int pages, int words) {
+        SiteRepository siteRepository = context.getBean(SiteRepository.class);
+        IndexingServiceImpl indexingService = context.getBean(IndexingServiceImpl.class);
+
+        long total = (long) sites * pages;
+        long done = 0;
+        long start = System.nanoTime();
+        for (int s = 0; s < sites; s++) {
+            Site site = new Site();
+            site.setName("Synthetic " + s);
+            site.setUrl("https://synthetic-" + s + ".test");
+            site.setStatus(Status.INDEXED);
+            site.setStatusTime(LocalDateTime.now());
+            siteRepository.save(site);
+
+            for (int p = 0; p < pages; p++) {
+                indexingService.savePage(site, corpus.page(site.getUrl(), p, words));
+                if (++done % Math.max(total / 10, 1) == 0) {
+                    double seconds = (System.nanoTime() - start) / 1e9;
+                    System.out.printf("Загружено %d из %d страниц, %.1f стр/с%n", done, total, done / seconds);
+                }
+            }
+        }
+        System.out.printf("Загрузка: %d страниц за %.1f с%n", total, (System.nanoTime() - start) / 1e9);
+    }
+
+    private static void replay(ConfigurableApplicationContext context, List<String> queries,
+                               int requests, int warmup, int concurrency) throws InterruptedException {
+        SearchService searchService = context.getBean(SearchService.class);
+        TransactionTemplate transaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        transaction.setReadOnly(true);
+
+        long[] latencies = new long[requests];
+        AtomicInteger errors = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+
+        // Прогрев: JIT, кеши Hibernate и буферы H2
+        runRequests(executor, warmup, queries, searchService, transaction, null, errors);
+        errors.set(0);
+
+        long start = System.nanoTime();
+        runRequests(executor, requests, queries, searchService, transaction, latencies, errors);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        executor.shutdown();
+
+        Arrays.sort(latencies);
+        System.out.printf("Запросов: %d, потоков: %d, ошибок: %d%n", requests, concurrency, errors.get());
+        System.out.printf("QPS: %.1f%n", requests / seconds);
+        System.out.printf("p50: %.1f мс, p95: %.1f мс, p99: %.1f мс, max: %.1f мс%n",
+                percentile(latencies, 50), percentile(latencies, 95), percentile(latencies, 99),
+                latencies.length == 0 ? 0 : latencies[latencies.length - 1] / 1e6);
+    }
+
+    private static void runRequests(ExecutorService executor, int count, List<String> queries,
+                                    SearchService searchService, TransactionTemplate transaction,
+                                    long[] latencies, AtomicInteger errors) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(count);
+        for (int i = 0; i < count; i++) {
+            int request = i;
+            executor.execute(() -> {
+                String query = queries.get(request % queries.size());
+                long begin = System.nanoTime();
+                try {
+                    // Вне веб-запроса нет open-in-view, поэтому ленивые связи читаются в транзакции
+                    transaction.executeWithoutResult(status -> searchService.search(query, null, 0, 20, false));
+                } catch (RuntimeException e) {
+                    errors.incrementAndGet();
+                } finally {
+                    if (latencies != null) latencies[request] = System.nanoTime() - begin;
+                    latch.countDown();
+                }
+            });
+        }
+        latch.await();
+    }
+
+    private static List<String> generateQueries(SyntheticCorpus corpus, int count) {
+        Random random = new Random(7);
+        List<String> queries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            queries.add(corpus.query(1 + random.nextInt(3)));
+        }
+        return queries;
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+}
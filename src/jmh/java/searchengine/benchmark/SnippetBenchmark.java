@@ -0,0 +1,63 @@
+package searchengine.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import searchengine.utils.LemmaFinder;
+import searchengine.utils.LemmaFinderEn;
+import searchengine.utils.LemmaIds;
+import searchengine.utils.PhraseMatcher;
+import searchengine.utils.SnippetBuilder;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Этапы поиска, которые работают с текстом страниц: сниппеты и поиск фраз.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnippetBenchmark {
+
+    // Формы слов, как их возвращает extractMatchingWords, вместе с копиями с заглавной буквы
+    private static final Set<String> MATCHING_WORDS = Set.of(
+            "смартфон", "Смартфон", "смартфоны", "Смартфоны", "зарядка", "Зарядка",
+            "потоков", "задачи", "search", "Search", "pages", "Pages", "query", "Query");
+
+    private static final BitSet QUERY_LEMMAS = LemmaIds.idSet(List.of(
+            "быстрый", "зарядка", "гарантия", "поток", "задача", "query", "term", "page"));
+
+    private LemmaFinder lemmaFinder;
+    private LemmaFinderEn lemmaFinderEn;
+    private List<String> texts;
+
+    @Setup
+    public void setUp() throws IOException {
+        lemmaFinder = LemmaFinder.getInstance();
+        lemmaFinderEn = LemmaFinderEn.getInstance();
+        texts = Corpus.loadText();
+    }
+
+    @Benchmark
+    public void buildSnippets(Blackhole blackhole) {
+        for (String text : texts) {
+            blackhole.consume(SnippetBuilder.buildSnippets(text, MATCHING_WORDS));
+        }
+    }
+
+    @Benchmark
+    public void consecutiveWords(Blackhole blackhole) {
+        for (String text : texts) {
+            Map<Integer, String> positions =
+                    PhraseMatcher.lemmasPositions(text, lemmaFinder, lemmaFinderEn, QUERY_LEMMAS);
+            blackhole.consume(PhraseMatcher.hasConsecutiveWords(positions, text, lemmaFinder, lemmaFinderEn));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package searchengine.benchmark;
+
+import searchengine.utils.CrawledPage;
+import searchengine.utils.TextUtils;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Генератор страниц и запросов для нагрузочного теста. Словарь - слова корпуса бенчмарков,
+ * упорядоченные по частоте; слова выбираются по закону Ципфа, как в естественных текстах.
+ */
+public class SyntheticCorpus {
+
+    private final List<String> vocabulary;
+    private final double[] cumulative;
+    private final Random random;
+
+    public SyntheticCorpus(long seed) {
+        this.random = new Random(seed);
+        Map<String, Long> counts = Corpus.loadText().stream()
+                .flatMap(text -> Arrays.stream(text.split("\\s+")))
+                .map(TextUtils::normalizeWord)
+                .filter(word -> word.length() > 2)
+                .collect(Collectors.groupingBy(word -> word, Collectors.counting()));
+        this.vocabulary = counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .map(Map.Entry::getKey)
+                .toList();
+
+        cumulative = new double[vocabulary.size()];
+        double sum = 0;
+        for (int rank = 0; rank < vocabulary.size(); rank++) {
+            sum += 1.0 / (rank + 1);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < cumulative.length; rank++) {
+            cumulative[rank] /= sum;
+        }
+    }
+
+    public CrawledPage page(String siteUrl, int number, int words) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            text.append(nextWord()).append(i % 12 == 11 ? ". " : " ");
+        }
+        String title = nextWord() + " " + nextWord();
+        String body = text.toString().trim();
+        String html = "<html><head><title>" + title + "</title></head><body><p>" + body + "</p></body></html>";
+        return CrawledPage.builder()
+                .url(siteUrl + "/page/" + number)
+                .code(200)
+                .content(html)
+                .text(title + " " + body)
+                .contentHash(TextUtils.contentHash(html))
+                .build();
+    }
+
+    public String query(int words) {
+        List<String> query = new ArrayList<>();
+        for (int i = 0; i < words; i++) {
+            query.add(nextWord());
+        }
+        return String.join(" ", query);
+    }
+
+    private String nextWord() {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return vocabulary.get(index >= 0 ? index : Math.min(-index - 1, vocabulary.size() - 1));
+    }
+}
@@ -0,0 +1,46 @@
+package searchengine.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import searchengine.utils.TextUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Нормализация слов и подсветка совпадений на тексте корпуса.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TextUtilsBenchmark {
+
+    private String[] words;
+    private List<String> texts;
+    private Pattern wordPattern;
+
+    @Setup
+    public void setUp() {
+        texts = Corpus.loadText();
+        words = String.join(" ", texts).split("\\s+");
+        wordPattern = Pattern.compile("(?iu)(смартфон\\S*|поиск\\S*|search\\S*|page\\S*)");
+    }
+
+    @Benchmark
+    public void normalizeWord(Blackhole blackhole) {
+        for (String word : words) {
+            blackhole.consume(TextUtils.normalizeWord(word));
+        }
+    }
+
+    @Benchmark
+    public void highlightMatches(Blackhole blackhole) {
+        for (String text : texts) {
+            blackhole.consume(TextUtils.highlightMatches(text, wordPattern));
+        }
+    }
+}
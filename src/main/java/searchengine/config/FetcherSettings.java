@@ -0,0 +1,50 @@
+package searchengine.config;
+
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import searchengine.utils.PageFetcher;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "fetcher")
+public class FetcherSettings {
+    // Таймаут установки соединения и таймаут всего ответа вместе с телом
+    private long connectTimeoutMillis = 10_000;
+    private long readTimeoutMillis = 10_000;
+
+    private String userAgent = "Mozilla";
+
+    // Предел тела ответа; больший ответ не дочитывается. Сайт может задать свой (max-body-size в sites)
+    private DataSize maxBodySize = DataSize.ofMegabytes(10);
+
+    // Повторы при временных ошибках: число повторов, первая пауза (удваивается) и её предел
+    private int maxRetries = 3;
+    private long retryDelayMillis = 500;
+    private long maxRetryDelayMillis = 10_000;
+
+    // После стольких неудач подряд хост ставится на паузу
+    private int breakerFailureThreshold = 5;
+    private long breakerOpenMillis = 30_000;
+
+    @PostConstruct
+    public void install() {
+        PageFetcher.setInstance(new PageFetcher(PageFetcher.Options.builder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+                .readTimeout(Duration.ofMillis(readTimeoutMillis))
+                .userAgent(userAgent)
+                .maxBodySize(maxBodySize.toBytes())
+                .maxRetries(maxRetries)
+                .retryDelayMillis(retryDelayMillis)
+                .maxRetryDelayMillis(maxRetryDelayMillis)
+                .breakerFailureThreshold(breakerFailureThreshold)
+                .breakerOpenMillis(breakerOpenMillis)
+                .build()));
+    }
+}
@@ -0,0 +1,29 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "index")
+public class IndexSettings {
+    // jpa - таблицы lemma и index_search в БД, segments - файлы сегментов в segment-dir
+    private String backend = "jpa";
+    private String segmentDir = "index";
+
+    // Буфер записи становится новым сегментом при таком числе постингов или раз в flush-interval-seconds
+    private int flushPostings = 100_000;
+    private long flushIntervalSeconds = 5;
+
+    // Когда сегментов становится merge-factor, самые маленькие сливаются в один не больше max-segment-size
+    private int mergeFactor = 8;
+    private DataSize maxSegmentSize = DataSize.ofMegabytes(1024);
+
+    // Каталог снимков /api/exportSnapshot; import-snapshot - снимок, загружаемый в индекс при запуске
+    private String snapshotDir = "snapshots";
+    private String importSnapshot;
+}
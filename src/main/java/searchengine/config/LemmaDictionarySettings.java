@@ -0,0 +1,34 @@
+package searchengine.config;
+
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import searchengine.utils.LemmaDictionary;
+import searchengine.utils.LemmaFinder;
+import searchengine.utils.LemmaFinderEn;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "lemma-dictionary")
+public class LemmaDictionarySettings {
+    // Файлы, подготовленные LemmaDictionaryBuilder; если не заданы, леммы считает только морфология.
+    // Полный словарь (из исходного словаря AOT) заменяет морфологию целиком
+    private String ru;
+    private String en;
+
+    @PostConstruct
+    public void install() throws IOException {
+        if (ru != null && !ru.isBlank()) {
+            LemmaFinder.setDictionary(LemmaDictionary.open(Path.of(ru)));
+        }
+        if (en != null && !en.isBlank()) {
+            LemmaFinderEn.setDictionary(LemmaDictionary.open(Path.of(en)));
+        }
+    }
+}
@@ -2,10 +2,14 @@ package searchengine.config;
 
 import lombok.Getter;
 import lombok.Setter;
+import org.springframework.util.unit.DataSize;
 
 @Setter
 @Getter
 public class SiteConfig {
     private String url;
     private String name;
+
+    // Предел тела ответа для страниц сайта; если не задан, действует fetcher.max-body-size
+    private DataSize maxBodySize;
 }
@@ -13,4 +13,18 @@ import java.util.List;
 @ConfigurationProperties(prefix = "indexing-settings")
 public class SitesList {
     private List<SiteConfig> sites;
+
+    // Хранить HTML страниц в сжатом виде (колонка compressed_content)
+    private boolean compressContent;
+
+    // Пауза перед загрузкой каждой страницы, чтобы не перегружать сайт
+    private long crawlDelayMillis = 1000;
+
+    // Переиндексация отдельных страниц (/api/indexPage): потоки и предел очереди адресов
+    private int indexPageWorkers = 2;
+    private int indexPageQueueCapacity = 1000;
+
+    // Контрольные точки обхода: каталог и период записи; по ним обход продолжается после перезапуска
+    private String checkpointDir = "checkpoints";
+    private long checkpointIntervalSeconds = 60;
 }
@@ -5,11 +5,17 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import searchengine.dto.Response;
 import searchengine.dto.SearchResponse;
+import searchengine.dto.indexing.IndexPageResponse;
+import searchengine.dto.progress.IndexingProgressResponse;
+import searchengine.dto.snapshot.SnapshotResponse;
 import searchengine.dto.statistics.StatisticsResponse;
 import searchengine.services.IndexingService;
 import searchengine.services.SearchService;
+import searchengine.services.SnapshotService;
 import searchengine.services.StatisticsService;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api")
 @RequiredArgsConstructor
@@ -21,6 +27,8 @@ public class ApiController {
 
     private final SearchService searchService;
 
+    private final SnapshotService snapshotService;
+
 
     @GetMapping("/statistics")
     public ResponseEntity<StatisticsResponse> statistics() {
@@ -38,18 +46,34 @@ public class ApiController {
 
     }
 
+    @GetMapping("/indexingProgress")
+    public ResponseEntity<IndexingProgressResponse> indexingProgress() {
+        return ResponseEntity.ok(indexingService.getProgress());
+    }
+
     @PostMapping("/indexPage")
-    public ResponseEntity<Response> indexPage(@RequestParam String url) {
-        return ResponseEntity.ok(indexingService.indexPage(url));
+    public ResponseEntity<IndexPageResponse> indexPage(@RequestParam("url") List<String> urls,
+                                                       @RequestParam(defaultValue = "0") int priority) {
+        return ResponseEntity.ok(indexingService.indexPage(urls, priority));
+    }
+
+    @GetMapping("/indexPage/{jobId}")
+    public ResponseEntity<IndexPageResponse> indexPageJob(@PathVariable long jobId) {
+        return ResponseEntity.ok(indexingService.getIndexPageJob(jobId));
     }
 
     @GetMapping("/search")
     public ResponseEntity<SearchResponse> search(@RequestParam String query,
                                                  @RequestParam(required = false) String site,
                                                  @RequestParam(required = false) Integer offset,
-                                                 @RequestParam(required = false) Integer limit) {
-        System.out.println("SEARCH: offset = " + offset + " limit = " + limit);
-        return ResponseEntity.ok(searchService.search(query, site, offset, limit));
+                                                 @RequestParam(required = false) Integer limit,
+                                                 @RequestParam(defaultValue = "false") boolean debug) {
+        return ResponseEntity.ok(searchService.search(query, site, offset, limit, debug));
+    }
+
+    @GetMapping("/exportSnapshot")
+    public ResponseEntity<SnapshotResponse> exportSnapshot() {
+        return ResponseEntity.ok(snapshotService.exportSnapshot());
     }
 
 }
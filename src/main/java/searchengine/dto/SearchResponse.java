@@ -20,4 +20,8 @@ public class SearchResponse {
 
     @JsonInclude(JsonInclude.Include.NON_NULL)
     private String error;
+
+    // Заполняется только при debug=true
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private SearchTrace trace;
 }
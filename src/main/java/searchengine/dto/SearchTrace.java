@@ -0,0 +1,31 @@
+package searchengine.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Подробности выполнения одного поискового запроса: время этапов (мс),
+ * частоты лемм, размер набора страниц после каждого пересечения и число разобранных страниц.
+ */
+@Data
+public class SearchTrace {
+
+    private double totalMillis;
+
+    private Map<String, Double> phases = new LinkedHashMap<>();
+
+    private Map<String, Integer> lemmaFrequencies = new LinkedHashMap<>();
+
+    private List<Integer> intersectionSizes = new ArrayList<>();
+
+    private int pagesParsed;
+
+    // Этап может выполняться несколько раз (например, выборка страниц по каждой лемме), время суммируется
+    public void addPhase(String phase, long nanos) {
+        phases.merge(phase, nanos / 1_000_000.0, Double::sum);
+    }
+}
@@ -0,0 +1,20 @@
+package searchengine.dto.indexing;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class IndexPageResponse {
+    private boolean result;
+    private String error;
+    private Long jobId;
+    // QUEUED, RUNNING или FINISHED
+    private String status;
+    private Integer total;
+    private Integer done;
+    private Integer failed;
+    private Map<String, String> errors;
+}
@@ -0,0 +1,21 @@
+package searchengine.dto.progress;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+@Data
+public class SiteProgressItem {
+    private String url;
+    private boolean indexing;
+    private long discovered;
+    private long queued;
+    private long fetched;
+    private long failed;
+    private long indexed;
+    private double pagesPerSecond;
+    private long fetchLatencyP50;
+    private long fetchLatencyP95;
+    private long fetchLatencyP99;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long etaSeconds;
+}
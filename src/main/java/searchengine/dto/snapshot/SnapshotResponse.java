@@ -0,0 +1,19 @@
+package searchengine.dto.snapshot;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SnapshotResponse {
+    private boolean result;
+    private String error;
+    // Путь к файлу снимка и что в него вошло
+    private String file;
+    private Integer sites;
+    private Integer pages;
+    private Integer lemmas;
+    private Long postings;
+    private Long bytes;
+    private Long millis;
+}
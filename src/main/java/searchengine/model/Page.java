@@ -4,7 +4,12 @@ import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
 
-@Table(name = "page", indexes = @Index(columnList = "path"))
+import java.time.LocalDateTime;
+
+@Table(name = "page", indexes = {
+        @Index(columnList = "site_id, path"),
+        @Index(columnList = "site_id, content_hash")
+})
 @Getter
 @Setter
 @Entity
@@ -22,6 +27,31 @@ public class Page {
 
     private int code;
 
-    @Column(columnDefinition = "MEDIUMTEXT")
-    private String content;
+    // Валидаторы ответа сервера для условных запросов при повторной загрузке
+    @Column(columnDefinition = "VARCHAR(255)")
+    private String etag;
+
+    @Column(columnDefinition = "VARCHAR(64)")
+    private String lastModified;
+
+    // Когда страница последний раз загружена и проиндексирована; сравнивается с lastmod из карты сайта
+    private LocalDateTime indexedAt;
+
+    // SHA-256 текста страницы
+    @Column(name = "content_hash", columnDefinition = "CHAR(64)")
+    private String contentHash;
+
+    // Страница того же сайта с таким же текстом; у дубликата нет ни содержимого, ни индекса
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "canonical_id")
+    private Page canonicalPage;
+
+    // Загружается только при обращении к содержимому
+    @OneToOne(cascade = CascadeType.ALL, fetch = FetchType.LAZY, orphanRemoval = true)
+    @JoinColumn(name = "content_id")
+    private PageContent pageContent;
+
+    public String getContent() {
+        return pageContent == null ? null : pageContent.getContent();
+    }
 }
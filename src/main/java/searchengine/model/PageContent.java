@@ -0,0 +1,45 @@
+package searchengine.model;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.BatchSize;
+import searchengine.utils.ContentCodec;
+
+/**
+ * HTML страницы хранится отдельно от {@link Page}, чтобы выборки страниц
+ * не тянули за собой содержимое, пока оно не понадобится.
+ */
+@Table(name = "page_content")
+@BatchSize(size = 50)
+@Getter
+@Setter
+@Entity
+public class PageContent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private int id;
+
+    @Column(columnDefinition = "MEDIUMTEXT")
+    private String content;
+
+    // Сжатый HTML, если включено indexing-settings.compress-content; распаковывается при первом обращении
+    @Column(columnDefinition = "MEDIUMBLOB")
+    private byte[] compressedContent;
+
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private String decompressedContent;
+
+    public String getContent() {
+        if (content != null || compressedContent == null) {
+            return content;
+        }
+        if (decompressedContent == null) {
+            decompressedContent = ContentCodec.decompress(compressedContent);
+        }
+        return decompressedContent;
+    }
+}
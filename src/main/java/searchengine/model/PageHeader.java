@@ -0,0 +1,14 @@
+package searchengine.model;
+
+/**
+ * Проекция страницы без содержимого.
+ */
+public interface PageHeader {
+    int getId();
+
+    int getSiteId();
+
+    String getPath();
+
+    int getCode();
+}
@@ -29,4 +29,8 @@ public class Site {
 
     @Column(columnDefinition = "VARCHAR(255)")
     private String name;
+
+    // Поколение индекса сайта, невидимое для поиска: строится при переиндексации
+    // или уже заменено новым и ждёт удаления. У каждого адреса не больше одного видимого поколения
+    private boolean hidden;
 }
@@ -0,0 +1,10 @@
+package searchengine.model;
+
+/**
+ * Проекция для агрегатных запросов: количество записей по сайту.
+ */
+public interface SiteCount {
+    int getSiteId();
+
+    long getCount();
+}
@@ -1,5 +1,7 @@
 package searchengine.repository;
 
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import searchengine.model.IndexSearch;
 
@@ -7,4 +9,15 @@ import java.util.List;
 
 public interface IndexSearchRepository extends CrudRepository<IndexSearch, Integer> {
     List<IndexSearch> findByPageId(int id);
+
+    @Query("SELECT i.lemma.id FROM IndexSearch i WHERE i.page.id = :pageId")
+    List<Integer> findLemmaIdsByPage(int pageId);
+
+    @Modifying
+    @Query("DELETE FROM IndexSearch i WHERE i.page.id = :pageId")
+    int deleteByPage(int pageId);
+
+    @Modifying
+    @Query("DELETE FROM IndexSearch i WHERE i.page.id IN :pageIds")
+    int deleteByPageIn(List<Integer> pageIds);
 }
@@ -1,18 +1,54 @@
 package searchengine.repository;
 
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import searchengine.model.Lemma;
+import searchengine.model.SiteCount;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
-import java.util.Set;
 
 public interface LemmaRepository extends CrudRepository<Lemma, Integer> {
-    Optional<Lemma> findFirstByLemma(String lemma);
+    // У каждого поколения сайта свои строки лемм: частоты поколений не смешиваются
+    Optional<Lemma> findFirstByLemmaAndSiteId(String lemma, int siteId);
 
     List<Lemma> findByLemmaIn(List<String> lemmas);
 
-    @Query("SELECT l FROM Lemma l WHERE l.lemma IN :lemmas ORDER BY l.frequency ASC")
-    List<Lemma> findAndSortByFrequencyAsc(Set<String> lemmas);
+    @Query("SELECT l.site.id AS siteId, SUM(l.frequency) AS count FROM Lemma l " +
+            "WHERE l.lemma = :lemma AND l.site.id IN :siteIds GROUP BY l.site.id")
+    List<SiteCount> sumFrequenciesBySite(String lemma, Collection<Integer> siteIds);
+
+    @Query("SELECT l.id FROM Lemma l WHERE l.lemma = :lemma AND l.site.id IN :siteIds")
+    List<Integer> findIds(String lemma, Collection<Integer> siteIds);
+
+    @Query("SELECT l.id FROM Lemma l WHERE l.lemma IN :lemmas AND l.site.id IN :siteIds")
+    List<Integer> findIds(Collection<String> lemmas, Collection<Integer> siteIds);
+
+    // Страница уходит из индекса: у каждой её леммы на одну страницу меньше
+    @Modifying
+    @Query("UPDATE Lemma l SET l.frequency = l.frequency - 1 WHERE l.id IN :ids")
+    int decrementFrequencies(List<Integer> ids);
+
+    // Леммы, у которых не осталось страниц, - только среди лемм удалённой страницы, по первичному ключу
+    @Modifying
+    @Query("DELETE FROM Lemma l WHERE l.id IN :ids AND l.frequency <= 0")
+    int deleteUnusedIn(List<Integer> ids);
+
+    @Query("SELECT l.id FROM Lemma l WHERE l.site.id = :siteId")
+    List<Integer> findIdsBySite(int siteId);
+
+    @Modifying
+    @Query("DELETE FROM Lemma l WHERE l.id IN :ids")
+    int deleteByIdIn(List<Integer> ids);
+
+    @Query("SELECT DISTINCT l.lemma FROM Lemma l")
+    List<String> findAllLemmas();
+
+    @Query("SELECT DISTINCT l.lemma FROM Lemma l WHERE l.site.id IN :siteIds")
+    List<String> findLemmas(Collection<Integer> siteIds);
+
+    @Query("SELECT l.site.id AS siteId, COUNT(l) AS count FROM Lemma l GROUP BY l.site.id")
+    List<SiteCount> countBySite();
 }
@@ -1,16 +1,55 @@
 package searchengine.repository;
 
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import searchengine.model.Page;
+import searchengine.model.PageHeader;
+import searchengine.model.SiteCount;
 
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
 public interface PageRepository extends CrudRepository<Page, Integer> {
-    Optional<Page> findByPath(String path);
+    Optional<Page> findBySiteIdAndPath(int siteId, String path);
 
     List<Page> findAllByIdIn(Set<Integer> ids);
 
     Optional<Page> findById(Integer id);
+
+    @Query("SELECT p.id AS id, p.site.id AS siteId, p.path AS path, p.code AS code FROM Page p")
+    List<PageHeader> findAllHeaders();
+
+    @Query("SELECT p.site.id AS siteId, COUNT(p) AS count FROM Page p GROUP BY p.site.id")
+    List<SiteCount> countBySite();
+
+    Optional<Page> findFirstBySiteIdAndContentHashAndCanonicalPageIsNull(int siteId, String contentHash);
+
+    // Дубликаты страницы: своего содержимого у них нет, без оригинала они удаляются и загружаются заново
+    @Query("SELECT p.path FROM Page p WHERE p.canonicalPage.id = :pageId")
+    List<String> findDuplicatePaths(int pageId);
+
+    @Modifying
+    @Query("DELETE FROM Page p WHERE p.canonicalPage.id = :pageId")
+    int deleteDuplicates(int pageId);
+
+    // Удаление поколения сайта частями по id страниц: ссылки дубликатов, затем страницы, затем их содержимое
+    @Query("SELECT p.id FROM Page p WHERE p.site.id = :siteId ORDER BY p.id")
+    List<Integer> findIdsBySite(int siteId);
+
+    @Modifying
+    @Query("UPDATE Page p SET p.canonicalPage = null WHERE p.id IN :pageIds AND p.canonicalPage IS NOT NULL")
+    int detachDuplicatesIn(List<Integer> pageIds);
+
+    @Query("SELECT p.pageContent.id FROM Page p WHERE p.id IN :pageIds AND p.pageContent IS NOT NULL")
+    List<Integer> findContentIds(List<Integer> pageIds);
+
+    @Modifying
+    @Query("DELETE FROM Page p WHERE p.id IN :pageIds")
+    int deleteByIdIn(List<Integer> pageIds);
+
+    @Modifying
+    @Query("DELETE FROM PageContent c WHERE c.id IN :contentIds")
+    int deleteContents(List<Integer> contentIds);
 }
@@ -2,12 +2,20 @@ package searchengine.repository;
 
 import org.springframework.data.repository.CrudRepository;
 import searchengine.model.Site;
+import searchengine.model.Status;
 
 import java.util.List;
 
 public interface SiteRepository extends CrudRepository<Site, Integer> {
     List<Site> findAll();
 
-    Site findByUrl(String url);
+    // Поколение сайта, по которому сейчас ищет поиск
+    Site findByUrlAndHiddenFalse(String url);
 
+    List<Site> findAllByUrl(String url);
+
+    List<Site> findAllByHiddenFalse();
+
+    // Заменённые и неудавшиеся поколения - их можно удалять
+    List<Site> findAllByHiddenTrueAndStatusNot(Status status);
 }
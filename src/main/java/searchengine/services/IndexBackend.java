@@ -0,0 +1,49 @@
+package searchengine.services;
+
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.utils.IndexSegment;
+import searchengine.utils.LemmaCounts;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Хранилище поискового индекса: постинги "лемма - страница - ранг" и статистика по ним.
+ * Страницы, их содержимое и сайты остаются в БД; реализация выбирается параметром index.backend.
+ */
+public interface IndexBackend {
+
+    // Запись: леммы сохранённой страницы, удаление страницы и всего поколения сайта
+    void addPage(Page page, LemmaCounts lemmas);
+
+    void removePage(Page page);
+
+    // Вызывается вне транзакции, пока страницы поколения ещё в БД; большой индекс удаляется частями
+    void removeSite(Site site);
+
+    // Число страниц с леммой на каждом из сайтов siteIds; сайты без леммы в ответ не попадают
+    Map<Integer, Long> documentFrequencies(String lemma, Collection<Integer> siteIds);
+
+    // Число страниц каждого из сайтов siteIds - знаменатель доли страниц с леммой
+    Map<Integer, Long> pageCounts(Collection<Integer> siteIds);
+
+    // Число разных лемм по сайтам
+    Map<Integer, Long> lemmaCounts();
+
+    Collection<String> lemmas();
+
+    // Отсортированные id страниц сайтов siteIds, на которых есть лемма
+    int[] pageIds(String lemma, Collection<Integer> siteIds);
+
+    // Сумма рангов лемм сайтов siteIds на каждой из страниц pageIds
+    Map<Integer, Float> rankSums(Collection<String> lemmas, Collection<Integer> siteIds, int[] pageIds);
+
+    // Снимок индекса: постинги сайтов siteIds по одной лемме, леммы по алфавиту и каждая один раз
+    void postings(Collection<Integer> siteIds, PostingsConsumer consumer) throws IOException;
+
+    interface PostingsConsumer {
+        void accept(String lemma, IndexSegment.Postings postings) throws IOException;
+    }
+}
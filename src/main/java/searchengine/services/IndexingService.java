@@ -1,11 +1,19 @@
 package searchengine.services;
 
 import searchengine.dto.Response;
+import searchengine.dto.indexing.IndexPageResponse;
+import searchengine.dto.progress.IndexingProgressResponse;
+
+import java.util.List;
 
 public interface IndexingService {
     Response startIndexing();
 
     Response stopIndexing();
 
-    Response indexPage(String url);
+    IndexPageResponse indexPage(List<String> urls, int priority);
+
+    IndexPageResponse getIndexPageJob(long jobId);
+
+    IndexingProgressResponse getProgress();
 }
@@ -0,0 +1,7 @@
+package searchengine.services;
+
+import searchengine.dto.snapshot.SnapshotResponse;
+
+public interface SnapshotService {
+    SnapshotResponse exportSnapshot();
+}
@@ -1,34 +1,60 @@
 package searchengine.services.impl;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
-import lombok.SneakyThrows;
 import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import searchengine.config.SiteConfig;
 import searchengine.config.SitesList;
 import searchengine.dto.Response;
+import searchengine.dto.indexing.IndexPageResponse;
+import searchengine.dto.progress.IndexingProgressResponse;
+import searchengine.dto.progress.SiteProgressItem;
 import searchengine.model.*;
-import searchengine.repository.IndexSearchRepository;
-import searchengine.repository.LemmaRepository;
 import searchengine.repository.PageRepository;
 import searchengine.repository.SiteRepository;
+import searchengine.services.IndexBackend;
 import searchengine.services.IndexingService;
+import searchengine.utils.ContentCodec;
+import searchengine.utils.CrawlCheckpoint;
+import searchengine.utils.CrawlContext;
+import searchengine.utils.CrawledPage;
+import searchengine.utils.HostUnavailableException;
+import searchengine.utils.IndexJob;
 import searchengine.utils.Indexing;
-import searchengine.utils.LemmaFinder;
-import searchengine.utils.LemmaFinderEn;
+import searchengine.utils.LemmaAnalyzer;
+import searchengine.utils.LemmaCounts;
+import searchengine.utils.LemmaIds;
+import searchengine.utils.PageFetcher;
+import searchengine.utils.PreviousPage;
+import searchengine.utils.SiteProgress;
+import searchengine.utils.SitemapReader;
+import searchengine.utils.TextUtils;
 
 import java.io.IOException;
 import java.net.SocketTimeoutException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 
 @Service
@@ -41,9 +67,50 @@ public class IndexingServiceImpl implements IndexingService {
 
     private final PageRepository pageRepository;
 
-    private final IndexSearchRepository indexSearchRepository;
+    private final IndexBackend indexBackend;
 
-    private final LemmaRepository lemmaRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    private static final Logger LOG = LoggerFactory.getLogger(IndexingServiceImpl.class);
+
+    // Сколько загруженных страниц может ждать записи в БД, прежде чем обход приостановится
+    private static final int PIPELINE_CAPACITY = 64;
+    private static final long PIPELINE_POLL_MILLIS = 200;
+
+    // Ход индексации по адресу сайта; очищается при следующем запуске полной индексации
+    private static final Map<String, SiteProgress> progress = new ConcurrentHashMap<>();
+
+    // Время этапов индексации, экспортируется через /actuator/prometheus
+    private static final Timer FETCH_TIMER = stageTimer("fetch");
+    private static final Timer PARSE_TIMER = stageTimer("parse");
+    private static final Timer LEMMATIZE_TIMER = stageTimer("lemmatize");
+    private static final Timer PERSIST_TIMER = stageTimer("persist");
+    private static final Counter FETCH_TIMEOUTS = Metrics.counter("searchengine.indexing.fetch.timeouts");
+
+    // Задания /api/indexPage; завершённые удаляются, когда их больше KEPT_JOBS
+    private static final int KEPT_JOBS = 1000;
+    private final Map<Long, IndexJob> jobs = new ConcurrentHashMap<>();
+    private final AtomicLong jobIds = new AtomicLong();
+    private final AtomicLong taskSequence = new AtomicLong();
+    private ThreadPoolExecutor indexPageWorkers;
+
+    // Идущие обходы по адресу сайта; их фронт и пройденные адреса периодически пишутся на диск
+    private final Map<String, CrawlContext> crawls = new ConcurrentHashMap<>();
+    private ScheduledExecutorService checkpointWriter;
+    private volatile boolean shuttingDown;
+
+    // Заменённое поколение сайта удаляется не сразу: поиск, начатый до переключения, успевает дочитать его строки
+    private static final long RETIRED_GENERATION_GRACE_SECONDS = 30;
+    private static final int DELETE_CHUNK = 1000;
+    private ScheduledExecutorService generationCollector;
+
+    // Запись страниц сайта идёт под его блокировкой: поиск страницы по адресу и оригинала по хэшу текста
+    // не должны разойтись с записью из другого потока. Разные сайты пишутся параллельно
+    private final Map<Integer, Object> siteLocks = new ConcurrentHashMap<>();
+
+    // Номера лемм (LemmaIds) страниц, ещё не записанных в индекс, держат обходы и задания indexPage;
+    // словарь номеров чистится только тогда, когда ни одного из них нет
+    private final ReadWriteLock lemmaIdsLock = new ReentrantReadWriteLock();
 
     @Getter
     private static volatile boolean stopExecutor;
@@ -65,13 +132,21 @@ public class IndexingServiceImpl implements IndexingService {
         stopExecutor = true;
         executor =
                 (ThreadPoolExecutor) Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
-        indexSearchRepository.deleteAll();
-        lemmaRepository.deleteAll();
-        pageRepository.deleteAll();
-        siteRepository.deleteAll();
-
+        progress.clear();
 
+        // Индекс не очищается: каждый сайт строится заново в скрытом поколении, а поиск до его готовности
+        // идёт по прежнему. Сайты, убранные из конфигурации, скрываются сразу и удаляются сборщиком
         List<SiteConfig> sitesList = list.getSites();
+        Set<String> configured = new HashSet<>();
+        sitesList.forEach(siteConfig -> configured.add(siteConfig.getUrl()));
+        for (Site site : siteRepository.findAllByHiddenFalse()) {
+            if (!configured.contains(site.getUrl())) {
+                site.setHidden(true);
+                siteRepository.save(site);
+            }
+        }
+        generationCollector.execute(this::collectRetiredGenerations);
+
         for (int i = 0; i < sitesList.size(); i++) {
             int j = i;
             createNewSiteInDb(sitesList, j);
@@ -87,108 +162,482 @@ public class IndexingServiceImpl implements IndexingService {
             newSite.setUrl(sitesList.get(j).getUrl());
             newSite.setStatusTime(LocalDateTime.now());
             newSite.setStatus(Status.INDEXING);
+            // Первая индексация сайта видна поиску по мере обхода, повторная - только после переключения
+            newSite.setHidden(siteRepository.findByUrlAndHiddenFalse(newSite.getUrl()) != null);
             siteRepository.save(newSite);
+            crawlSite(newSite, null);
+        });
+    }
 
-            try {
-                ForkJoinPool pool = new ForkJoinPool();
-                Indexing indexing = new Indexing(newSite.getUrl());
-                Set<String> setLinks = new HashSet<>(pool.invoke(indexing));
-                pool.shutdown();
-                for (String link : setLinks) {
-                    if (link.contains(getDomen(newSite.getUrl()))) setPage(newSite, link);
-                    if (!stopExecutor) {
-                        executor.shutdown();
-                        getErrorSite(newSite, "Индексация остановлена пользователем");
-                        break;
-                    }
+    /**
+     * Продолжает обходы, прерванные перезапуском приложения: сайт в статусе INDEXING
+     * с контрольной точкой обходится дальше с её фронта, уже записанные страницы сохраняются.
+     * Скрытое поколение без контрольной точки и поколения, оставшиеся от прошлых переключений, удаляются.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedCrawls() {
+        for (SiteConfig siteConfig : list.getSites()) {
+            for (Site site : siteRepository.findAllByUrl(siteConfig.getUrl())) {
+                if (site.getStatus() != Status.INDEXING) {
+                    continue;
                 }
-                if (stopExecutor) {
-                    newSite.setStatusTime(LocalDateTime.now());
-                    newSite.setStatus(Status.INDEXED);
+                Optional<CrawlCheckpoint> checkpoint;
+                try {
+                    checkpoint = CrawlCheckpoint.read(checkpointFile(site.getUrl()), site.getUrl());
+                } catch (IOException e) {
+                    checkpoint = Optional.empty();
                 }
-            } catch (Exception ex) {
-                getErrorSite(newSite, ex.getMessage());
-                siteRepository.save(newSite);
+                if (checkpoint.isEmpty()) {
+                    getErrorSite(site, "Индексация прервана перезапуском приложения");
+                    siteRepository.save(site);
+                    continue;
+                }
+                CrawlCheckpoint resumed = checkpoint.get();
+                executor.execute(() -> crawlSite(site, resumed));
             }
-            siteRepository.save(newSite);
+        }
+        generationCollector.execute(this::collectRetiredGenerations);
+    }
+
+    // checkpoint - контрольная точка прерванного обхода или null для нового
+    private void crawlSite(Site newSite, CrawlCheckpoint checkpoint) {
+        lemmaIdsLock.readLock().lock();
+        try {
+            crawl(newSite, checkpoint);
+        } finally {
+            lemmaIdsLock.readLock().unlock();
+        }
+    }
+
+    private void crawl(Site newSite, CrawlCheckpoint checkpoint) {
+        SiteProgress siteProgress = new SiteProgress(newSite.getUrl());
+        progress.put(newSite.getUrl(), siteProgress);
+
+        // Обход, загрузка, разбор и лемматизация страниц идут в ForkJoinPool, а запись в БД -
+        // в этом потоке по мере поступления страниц через ограниченную очередь
+        BlockingQueue<CrawledPage> pages = new LinkedBlockingQueue<>(PIPELINE_CAPACITY);
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            // Карта сайта даёт страницы, до которых по ссылкам далеко или нельзя дойти, и даты их изменения;
+            // при продолжении обхода она нужна только ради дат
+            CrawlContext.CrawlContextBuilder builder = CrawlContext.builder()
+                    .siteUrl(newSite.getUrl())
+                    .pages(pages)
+                    .progress(siteProgress)
+                    .delayMillis(list.getCrawlDelayMillis())
+                    .maxBodySize(maxBodySize(newSite.getUrl()))
+                    .sitemap(SitemapReader.read(newSite.getUrl()));
+            // При переиндексации неизменившиеся страницы переносятся из видимого поколения без загрузки
+            Site live = newSite.isHidden() ? siteRepository.findByUrlAndHiddenFalse(newSite.getUrl()) : null;
+            if (live != null) {
+                builder.previous(url -> previousPage(live, url))
+                        .restore(url -> restorePage(live, url));
+            }
+            if (checkpoint != null) {
+                Set<String> links = ConcurrentHashMap.newKeySet();
+                links.addAll(checkpoint.getVisited());
+                builder.links(links).resumeFrontier(checkpoint.getFrontier());
+            }
+            CrawlContext context = builder.build();
+            crawls.put(newSite.getUrl(), context);
+
+            ForkJoinTask<Void> discovery = pool.submit(new Indexing(newSite.getUrl(), context));
+            boolean completed = savePages(newSite, context, discovery);
+            if (completed && !context.getFailed().isEmpty()) {
+                // Адреса, не загруженные из-за сетевых ошибок, - ещё раз, когда хосты успели восстановиться
+                discovery.get();
+                discovery = pool.submit(Indexing.retryFailed(newSite.getUrl(), context));
+                completed = savePages(newSite, context, discovery);
+            }
+            if (completed) {
+                discovery.get();
+                newSite.setStatusTime(LocalDateTime.now());
+                newSite.setStatus(Status.INDEXED);
+            }
+        } catch (ExecutionException ex) {
+            getErrorSite(newSite, ex.getCause().getMessage());
+        } catch (Exception ex) {
+            getErrorSite(newSite, ex.getMessage());
+        } finally {
+            crawls.remove(newSite.getUrl());
+            pool.shutdownNow();
+            siteProgress.finish();
+        }
+        siteRepository.save(newSite);
+        if (newSite.isHidden()) {
+            finishGeneration(newSite);
+        }
+        // Обход завершён в этом процессе - продолжать нечего
+        if (!shuttingDown) {
+            deleteCheckpoint(newSite.getUrl());
+        }
+    }
+
+    // Построенное скрытое поколение заменяет видимое; неудавшееся остаётся скрытым и удаляется,
+    // а поиск продолжает работать по прежнему поколению
+    private void finishGeneration(Site generation) {
+        if (generation.getStatus() == Status.INDEXING) {
+            // Обход прерван остановкой приложения и продолжится с контрольной точки
+            return;
+        }
+        if (generation.getStatus() == Status.INDEXED) {
+            publish(generation);
+        } else {
+            Site live = siteRepository.findByUrlAndHiddenFalse(generation.getUrl());
+            if (live != null) {
+                live.setLastError("Переиндексация не удалась: " + generation.getLastError());
+                siteRepository.save(live);
+            }
+        }
+        if (!shuttingDown) {
+            generationCollector.schedule(this::collectRetiredGenerations,
+                    RETIRED_GENERATION_GRACE_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    // Переключение поиска на новое поколение одной транзакцией: запросы видят либо старое, либо новое
+    private void publish(Site generation) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Site live = siteRepository.findByUrlAndHiddenFalse(generation.getUrl());
+            if (live != null) {
+                live.setHidden(true);
+                siteRepository.save(live);
+            }
+            generation.setHidden(false);
+            siteRepository.save(generation);
         });
     }
 
+    // Удаляет заменённые и неудавшиеся поколения частями, каждая часть - в своей транзакции:
+    // индекс, ссылки дубликатов, страницы с содержимым и последней - строка сайта. Поколение, удалённое
+    // не до конца, остаётся скрытым, и следующая сборка продолжит с того, что осталось
+    private void collectRetiredGenerations() {
+        for (Site site : siteRepository.findAllByHiddenTrueAndStatusNot(Status.INDEXING)) {
+            try {
+                indexBackend.removeSite(site);
+                List<Integer> pageIds = pageRepository.findIdsBySite(site.getId());
+                // Оригинал дубликата может попасть в более раннюю часть, поэтому ссылки снимаются заранее
+                for (int from = 0; from < pageIds.size(); from += DELETE_CHUNK) {
+                    List<Integer> chunk = pageIds.subList(from, Math.min(from + DELETE_CHUNK, pageIds.size()));
+                    transactionTemplate.executeWithoutResult(status -> pageRepository.detachDuplicatesIn(chunk));
+                }
+                for (int from = 0; from < pageIds.size(); from += DELETE_CHUNK) {
+                    List<Integer> chunk = pageIds.subList(from, Math.min(from + DELETE_CHUNK, pageIds.size()));
+                    transactionTemplate.executeWithoutResult(status -> {
+                        List<Integer> contentIds = pageRepository.findContentIds(chunk);
+                        pageRepository.deleteByIdIn(chunk);
+                        if (!contentIds.isEmpty()) {
+                            pageRepository.deleteContents(contentIds);
+                        }
+                    });
+                }
+                siteRepository.deleteById(site.getId());
+            } catch (RuntimeException e) {
+                LOG.error("Не удалось удалить старое поколение сайта {}", site.getUrl(), e);
+            }
+        }
+        retainIndexedLemmas();
+    }
+
+    // Леммы удалённых поколений выбрасываются из словаря номеров, иначе он только растёт. Пока идёт
+    // индексация, словарь не трогается - его почистит сборка после неё
+    private void retainIndexedLemmas() {
+        if (!lemmaIdsLock.writeLock().tryLock()) {
+            return;
+        }
+        try {
+            int removed = LemmaIds.retainAll(indexBackend.lemmas());
+            if (removed > 0) {
+                LOG.info("Из словаря номеров выброшено лемм, которых нет в индексе: {}", removed);
+            }
+        } finally {
+            lemmaIdsLock.writeLock().unlock();
+        }
+    }
+
+    // Записывает страницы из очереди, пока идёт обход; false, если индексацию остановил пользователь
+    private boolean savePages(Site site, CrawlContext context, ForkJoinTask<Void> discovery)
+            throws InterruptedException {
+        BlockingQueue<CrawledPage> pages = context.getPages();
+        String domen = getDomen(site.getUrl());
+        while (!discovery.isDone() || !pages.isEmpty()) {
+            CrawledPage page = pages.poll(PIPELINE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+            if (page != null) {
+                if (page.getUrl().contains(domen)) savePage(site, page);
+                context.complete(page.getUrl());
+                context.getProgress().onIndexed();
+            }
+            if (!stopExecutor) {
+                executor.shutdown();
+                getErrorSite(site, "Индексация остановлена пользователем");
+                return false;
+            }
+        }
+        return stopExecutor;
+    }
+
+    private Path checkpointFile(String siteUrl) {
+        return CrawlCheckpoint.file(Path.of(list.getCheckpointDir()), siteUrl);
+    }
+
+    private void writeCheckpoints() {
+        for (CrawlContext context : crawls.values()) {
+            try {
+                context.checkpoint().write(checkpointFile(context.getSiteUrl()));
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("Не удалось записать контрольную точку обхода {}", context.getSiteUrl(), e);
+            }
+        }
+    }
+
+    private void deleteCheckpoint(String siteUrl) {
+        try {
+            Files.deleteIfExists(checkpointFile(siteUrl));
+        } catch (IOException e) {
+            LOG.warn("Не удалось удалить контрольную точку обхода {}", siteUrl, e);
+        }
+    }
+
+    // Предел тела ответа из настроек сайта; 0 - предел загрузчика по умолчанию
+    private long maxBodySize(String siteUrl) {
+        return list.getSites().stream()
+                .filter(siteConfig -> siteConfig.getUrl().equals(siteUrl) && siteConfig.getMaxBodySize() != null)
+                .mapToLong(siteConfig -> siteConfig.getMaxBodySize().toBytes())
+                .findFirst()
+                .orElse(0);
+    }
+
+    private PreviousPage previousPage(Site live, String url) {
+        return pageRepository.findBySiteIdAndPath(live.getId(), extractPath(url))
+                .filter(page -> page.getCode() == HttpStatus.OK.value())
+                .map(page -> new PreviousPage(page.getEtag(), page.getLastModified(), page.getIndexedAt()))
+                .orElse(null);
+    }
+
+    // Страница видимого поколения, разобранная из сохранённого HTML так же, как после загрузки:
+    // в новом поколении она записывается и индексируется обычным путём, а её ссылки идут в обход
+    private CrawledPage restorePage(Site live, String url) {
+        return transactionTemplate.execute(status -> pageRepository.findBySiteIdAndPath(live.getId(), extractPath(url))
+                .filter(page -> page.getCode() == HttpStatus.OK.value())
+                .map(page -> {
+                    // У дубликата своего HTML нет - он тот же, что у оригинала
+                    Page source = page.getCanonicalPage() != null ? page.getCanonicalPage() : page;
+                    String html = source.getContent();
+                    if (html == null) {
+                        return null;
+                    }
+                    CrawledPage.CrawledPageBuilder restored = CrawledPage.builder()
+                            .url(url)
+                            .code(HttpStatus.OK.value())
+                            .etag(page.getEtag())
+                            .lastModified(page.getLastModified());
+                    return parsePage(restored, Jsoup.parse(html, url));
+                })
+                .orElse(null));
+    }
+
     private void getErrorSite(Site site, String error) {
         site.setLastError(error);
         site.setStatusTime(LocalDateTime.now());
         site.setStatus(Status.FAILED);
     }
 
-    private synchronized void setPage(Site site, String url) throws IOException {
-        int frequency = 0;
+    private void setPage(Site site, String url) {
+        Optional<Page> page = pageRepository.findBySiteIdAndPath(site.getId(), extractPath(url));
+
+        CrawledPage crawledPage;
+        try {
+            // Если страница уже загружалась и её текст сохранён, спрашиваем сервер, изменилась ли она
+            crawledPage = page.isPresent() && isStored(page.get())
+                    ? fetchPage(url, page.get().getEtag(), page.get().getLastModified(), maxBodySize(site.getUrl()))
+                    : fetchPage(url, null, null, maxBodySize(site.getUrl()));
+        } catch (SocketTimeoutException | HostUnavailableException e) {
+            // Повторы уже исчерпаны: страница остаётся как была, ошибка попадает в задание indexPage
+            if (e instanceof SocketTimeoutException) FETCH_TIMEOUTS.increment();
+            LOG.warn("Не удалось загрузить страницу {}", url, e);
+            throw new RuntimeException("Не удалось загрузить страницу: " + e.getMessage(), e);
+        } catch (IOException ex) {
+            crawledPage = CrawledPage.builder().url(url).code(HttpStatus.NOT_FOUND.value()).build();
+        }
+
+        if (page.isPresent() && isUnchanged(page.get(), crawledPage)) {
+            return;
+        }
+        List<String> duplicates = page.map(this::removePage).orElse(List.of());
+        savePage(site, crawledPage);
+        // Дубликаты прежней версии загружаются заново: их текст мог и не измениться вместе с оригиналом
+        String root = site.getUrl().endsWith("/") ? site.getUrl().substring(0, site.getUrl().length() - 1) : site.getUrl();
+        for (String path : duplicates) {
+            try {
+                setPage(site, root + path);
+            } catch (RuntimeException e) {
+                // Дубликата нет в БД, его вернёт следующий обход
+                LOG.warn("Не удалось загрузить дубликат {}{}", root, path, e);
+            }
+        }
+    }
+
+    // У страницы с кодом 200 есть своё содержимое или оригинал. Страница без того и другого
+    // (оставшаяся от прежнего удаления оригинала) загружается без условного запроса
+    private boolean isStored(Page page) {
+        return page.getCode() != HttpStatus.OK.value() || page.getPageContent() != null || page.getCanonicalPage() != null;
+    }
+
+    private boolean isUnchanged(Page page, CrawledPage crawledPage) {
+        if (!isStored(page)) {
+            return false;
+        }
+        if (crawledPage.getCode() == HttpStatus.NOT_MODIFIED.value()) {
+            return true;
+        }
+        if (crawledPage.getContentHash() == null || !crawledPage.getContentHash().equals(page.getContentHash())) {
+            return false;
+        }
+        // Текст тот же, обновляем только валидаторы
+        page.setEtag(crawledPage.getEtag());
+        page.setLastModified(crawledPage.getLastModified());
+        pageRepository.save(page);
+        return true;
+    }
+
+    /**
+     * Сохраняет загруженную страницу сайта, её леммы и индекс.
+     * Это общий путь записи для обхода, indexPage и нагрузочного теста.
+     * Страница, пришедшая без лемм, лемматизируется до блокировки сайта.
+     */
+    public void savePage(Site site, CrawledPage crawledPage) {
+        LemmaCounts lemmas = lemmatize(crawledPage).getLemmas();
+        synchronized (siteLocks.computeIfAbsent(site.getId(), id -> new Object())) {
+            persistPage(site, crawledPage, lemmas);
+        }
+    }
 
-        Optional<Page> page = pageRepository.findByPath(extractPath(url));
+    private void persistPage(Site site, CrawledPage crawledPage, LemmaCounts lemmas) {
+        String url = crawledPage.getUrl();
+
+        Optional<Page> page = pageRepository.findBySiteIdAndPath(site.getId(), extractPath(url));
         if (page.isPresent()) return;
 
         Page newPage = new Page();
         newPage.setSite(site);
         newPage.setPath(extractPath(url));
-        frequency = 1;
+        newPage.setCode(crawledPage.getCode());
+        newPage.setEtag(crawledPage.getEtag());
+        newPage.setLastModified(crawledPage.getLastModified());
+        newPage.setContentHash(crawledPage.getContentHash());
+        newPage.setIndexedAt(LocalDateTime.now());
+
+        if (newPage.getCode() != 200) {
+            PERSIST_TIMER.record(() -> pageRepository.save(newPage));
+            return;
+        }
 
-        try {
-            newPage.setContent(getHtml(url));
-            newPage.setCode(new ResponseEntity<>(HttpStatus.OK).getStatusCodeValue());
-        } catch (SocketTimeoutException e) {
-            // Логируем и пропускаем эту страницу, не прерывая индексацию
-            System.err.println("Timeout for URL: " + url);
+        // Тот же текст под другим адресом не храним и не индексируем повторно
+        Optional<Page> canonicalPage = pageRepository
+                .findFirstBySiteIdAndContentHashAndCanonicalPageIsNull(site.getId(), crawledPage.getContentHash());
+        if (canonicalPage.isPresent()) {
+            newPage.setCanonicalPage(canonicalPage.get());
+            PERSIST_TIMER.record(() -> pageRepository.save(newPage));
             return;
-        } catch (IOException ex) {
-            newPage.setCode(new ResponseEntity<>(HttpStatus.NOT_FOUND).getStatusCodeValue());
-        }
-
-        pageRepository.save(newPage);
-
-        if (newPage.getCode() != 200) return;
-
-        // Лемматизация
-        LemmaFinder lemmaFinder = LemmaFinder.getInstance();
-        LemmaFinderEn lemmaFinderEn = LemmaFinderEn.getInstance();
-        Map<String, Integer> lemmas = lemmaFinder.collectLemmas(url);
-        lemmas.putAll(lemmaFinderEn.collectLemmas(url));
-
-        for (Map.Entry<String, Integer> entry : lemmas.entrySet()) {
-            IndexSearch newIndex = new IndexSearch();
-            Lemma newLemma = new Lemma();
-            Optional<Lemma> lemma = lemmaRepository.findFirstByLemma(entry.getKey());
-
-            if (lemma.isEmpty()) {
-                newLemma.setLemma(entry.getKey());
-                newLemma.setSite(site);
-                newLemma.setFrequency(frequency);
-                newIndex.setPage(newPage);
-                newIndex.setLemma(newLemma);
-                newIndex.setRank(Float.valueOf(entry.getValue()));
-
-                lemmaRepository.save(newLemma);
-                indexSearchRepository.save(newIndex);
-            } else {
-                frequency = lemma.get().getFrequency() + 1;
-                lemma.get().setFrequency(frequency);
-                newIndex.setPage(newPage);
-                newIndex.setLemma(lemma.get());
-                newIndex.setRank(Float.valueOf(entry.getValue()));
-                lemmaRepository.save(lemma.get());
-                indexSearchRepository.save(newIndex);
-            }
         }
+
+        storeContent(newPage, crawledPage.getContent());
+        PERSIST_TIMER.record(() -> pageRepository.save(newPage));
+        PERSIST_TIMER.record(() -> indexBackend.addPage(newPage, lemmas));
     }
 
+    /**
+     * Леммы текста загруженной страницы (русские и английские слова - за один проход). Вызывается потоками
+     * обхода до передачи страницы на запись; страница без текста или уже лемматизированная не меняется.
+     */
+    public static CrawledPage lemmatize(CrawledPage page) {
+        if (page.getCode() != HttpStatus.OK.value() || page.getText() == null || page.getLemmas() != null) {
+            return page;
+        }
+        LemmaAnalyzer analyzer;
+        try {
+            analyzer = LemmaAnalyzer.getInstance();
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка создания экземпляров морфологических анализаторов", e);
+        }
+        page.setLemmas(LEMMATIZE_TIMER.record(() -> analyzer.collectLemmaIds(page.getText())));
+        return page;
+    }
 
-    public static String getHtml(String link) throws IOException {
-        return Jsoup.connect(link.trim())
-                .userAgent("Mozilla")
-                .timeout(10000)  // 10 секунд таймаут
-                .get()
-                .html();
+    private void storeContent(Page page, String content) {
+        PageContent pageContent = new PageContent();
+        if (list.isCompressContent()) {
+            pageContent.setCompressedContent(ContentCodec.compress(content));
+        } else {
+            pageContent.setContent(content);
+        }
+        page.setPageContent(pageContent);
     }
 
 
+    /**
+     * Загружает страницу одним запросом и разбирает её один раз:
+     * из результата берутся HTML, текст и ссылки.
+     */
+    public static CrawledPage fetchPage(String link) throws IOException {
+        return fetchPage(link, null, null, 0);
+    }
+
+    /**
+     * Условная загрузка: если сервер подтвердит, что страница не менялась,
+     * вернётся страница с кодом 304 без содержимого.
+     * maxBodySize - предел тела ответа в байтах, 0 - предел загрузчика по умолчанию.
+     */
+    public static CrawledPage fetchPage(String link, String etag, String lastModified, long maxBodySize)
+            throws IOException {
+        Map<String, String> headers = new HashMap<>();
+        if (etag != null) headers.put("If-None-Match", etag);
+        if (lastModified != null) headers.put("If-Modified-Since", lastModified);
+
+        Timer.Sample fetchSample = Timer.start();
+        PageFetcher.Response response;
+        try {
+            response = PageFetcher.getInstance().fetchHtml(link, headers, maxBodySize);
+        } finally {
+            fetchSample.stop(FETCH_TIMER);
+        }
+        CrawledPage.CrawledPageBuilder page = CrawledPage.builder()
+                .url(link)
+                .code(response.getCode())
+                .etag(response.header("ETag"))
+                .lastModified(response.header("Last-Modified"));
+        if (response.getCode() != HttpStatus.OK.value()) {
+            return page.build();
+        }
+
+        Timer.Sample parseSample = Timer.start();
+        CrawledPage parsed = parsePage(page, response.parse());
+        parseSample.stop(PARSE_TIMER);
+        return parsed;
+    }
+
+    // HTML, текст, ссылки и хэш текста из разобранного документа
+    private static CrawledPage parsePage(CrawledPage.CrawledPageBuilder page, Document document) {
+        String text = document.text();
+        List<String> links = document.select("a").stream()
+                .map(element -> element.absUrl("href"))
+                .filter(href -> !href.isEmpty())
+                .toList();
+        return page.content(document.html())
+                .text(text)
+                .contentHash(TextUtils.contentHash(text))
+                .links(links)
+                .build();
+    }
+
+
+
+    private static Timer stageTimer(String stage) {
+        return Timer.builder("searchengine.indexing.stage")
+                .tag("stage", stage)
+                .register(Metrics.globalRegistry);
+    }
+
 
     public static String getDomen(String url) {
         return (url.contains("www")) ?
@@ -209,34 +658,175 @@ public class IndexingServiceImpl implements IndexingService {
     }
 
 
-    @SneakyThrows
     @Override
-    public Response indexPage(String url) {
-        stopExecutor = true;
-        executor =
-                (ThreadPoolExecutor) Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
-        if (!urlIsUrl(url)) {
-            return getFalseResponse("Данная страница не найдена");
+    public IndexingProgressResponse getProgress() {
+        List<SiteProgressItem> items = new ArrayList<>();
+        for (SiteProgress siteProgress : progress.values()) {
+            SiteProgressItem item = new SiteProgressItem();
+            item.setUrl(siteProgress.getUrl());
+            item.setIndexing(siteProgress.isRunning());
+            item.setDiscovered(siteProgress.getDiscovered());
+            item.setQueued(siteProgress.getQueued());
+            item.setFetched(siteProgress.getFetched());
+            item.setFailed(siteProgress.getFailed());
+            item.setIndexed(siteProgress.getIndexed());
+            item.setPagesPerSecond(siteProgress.getPagesPerSecond());
+            item.setFetchLatencyP50(siteProgress.getLatencyPercentile(50));
+            item.setFetchLatencyP95(siteProgress.getLatencyPercentile(95));
+            item.setFetchLatencyP99(siteProgress.getLatencyPercentile(99));
+            item.setEtaSeconds(siteProgress.getEtaSeconds());
+            items.add(item);
         }
 
-        String domen = getDomen(url);
-        Iterable<Site> sites = siteRepository.findAll();
+        IndexingProgressResponse response = new IndexingProgressResponse();
+        response.setResult(true);
+        response.setIndexing(isIndexing());
+        response.setSites(items);
+        return response;
+    }
+
+    public static boolean isIndexing() {
+        return progress.values().stream().anyMatch(SiteProgress::isRunning);
+    }
+
+
+    @PostConstruct
+    void startWorkers() {
+        // Все потоки запускаются сразу, чтобы каждая задача проходила через очередь с приоритетом
+        indexPageWorkers = new ThreadPoolExecutor(list.getIndexPageWorkers(), list.getIndexPageWorkers(),
+                0, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>());
+        indexPageWorkers.prestartAllCoreThreads();
+
+        checkpointWriter = Executors.newSingleThreadScheduledExecutor();
+        long interval = list.getCheckpointIntervalSeconds();
+        checkpointWriter.scheduleWithFixedDelay(this::writeCheckpoints, interval, interval, TimeUnit.SECONDS);
+
+        generationCollector = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @PreDestroy
+    void stopWorkers() {
+        // При остановке приложения последняя контрольная точка пишется сразу и не удаляется
+        shuttingDown = true;
+        checkpointWriter.shutdownNow();
+        writeCheckpoints();
+        indexPageWorkers.shutdownNow();
+        // Неудалённые поколения соберёт следующий запуск
+        generationCollector.shutdownNow();
+    }
+
+    /**
+     * Ставит адреса в очередь на переиндексацию и сразу возвращает номер задания.
+     * Адреса с большим priority обрабатываются раньше, при равном - в порядке поступления.
+     */
+    @Override
+    public synchronized IndexPageResponse indexPage(List<String> urls, int priority) {
+        if (urls.isEmpty()) {
+            return getIndexPageError("Данная страница не найдена");
+        }
 
-        int i = 0;
-        for (Site site : sites) {
-            if (site.getUrl().contains(domen)) {
-                i++;
-                Optional<Page> page = pageRepository.findByPath(extractPath(url));
-                page.ifPresent(this::findLemmaInDb);
-                setPage(site, url);
+        // Страница переиндексируется в видимом поколении; строящееся получит её при своём обходе
+        Iterable<Site> sites = siteRepository.findAllByHiddenFalse();
+        Map<String, List<Site>> targets = new LinkedHashMap<>();
+        for (String url : urls) {
+            if (!urlIsUrl(url)) {
+                return getIndexPageError("Данная страница не найдена");
             }
+            String domen = getDomen(url);
+            List<Site> urlSites = new ArrayList<>();
+            for (Site site : sites) {
+                if (site.getUrl().contains(domen)) {
+                    urlSites.add(site);
+                }
+            }
+            if (urlSites.isEmpty()) {
+                return getIndexPageError(
+                        "Данная страница находится за пределами сайтов, указанных в конфигурационном файле");
+            }
+            targets.put(url, urlSites);
         }
 
+        if (indexPageWorkers.getQueue().size() + targets.size() > list.getIndexPageQueueCapacity()) {
+            return getIndexPageError("Очередь переиндексации переполнена, повторите запрос позже");
+        }
 
-        if (i == 0)
-            return getFalseResponse("Данная страница находится за пределами сайтов, указанных в конфигурационном файле");
+        IndexJob job = new IndexJob(jobIds.incrementAndGet(), priority, new ArrayList<>(targets.keySet()));
+        jobs.put(job.getId(), job);
+        evictFinishedJobs();
+        targets.forEach((url, urlSites) ->
+                indexPageWorkers.execute(new IndexPageTask(job, url, urlSites, taskSequence.incrementAndGet())));
+        return getIndexPageJobResponse(job);
+    }
 
-        return getTrueResponse();
+    @Override
+    public IndexPageResponse getIndexPageJob(long jobId) {
+        IndexJob job = jobs.get(jobId);
+        return job == null ? getIndexPageError("Задание не найдено") : getIndexPageJobResponse(job);
+    }
+
+    private void evictFinishedJobs() {
+        int excess = jobs.size() - KEPT_JOBS;
+        if (excess <= 0) return;
+        jobs.values().stream()
+                .filter(job -> job.getStatus() == IndexJob.Status.FINISHED)
+                .sorted(Comparator.comparingLong(IndexJob::getId))
+                .limit(excess)
+                .toList()
+                .forEach(job -> jobs.remove(job.getId()));
+    }
+
+    private IndexPageResponse getIndexPageJobResponse(IndexJob job) {
+        IndexPageResponse response = new IndexPageResponse();
+        response.setResult(true);
+        response.setJobId(job.getId());
+        response.setStatus(job.getStatus().name());
+        response.setTotal(job.getUrls().size());
+        response.setDone(job.getDone());
+        response.setFailed(job.getFailed());
+        response.setErrors(job.getErrors().isEmpty() ? null : new TreeMap<>(job.getErrors()));
+        return response;
+    }
+
+    private IndexPageResponse getIndexPageError(String error) {
+        IndexPageResponse response = new IndexPageResponse();
+        response.setResult(false);
+        response.setError(error);
+        return response;
+    }
+
+    // Один адрес задания; сравнение задаёт порядок в очереди потоков переиндексации
+    private final class IndexPageTask implements Runnable, Comparable<IndexPageTask> {
+        private final IndexJob job;
+        private final String url;
+        private final List<Site> sites;
+        private final long sequence;
+
+        private IndexPageTask(IndexJob job, String url, List<Site> sites, long sequence) {
+            this.job = job;
+            this.url = url;
+            this.sites = sites;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            job.onStarted();
+            lemmaIdsLock.readLock().lock();
+            try {
+                sites.forEach(site -> setPage(site, url));
+                job.onDone();
+            } catch (RuntimeException e) {
+                job.onFailed(url, String.valueOf(e.getMessage()));
+            } finally {
+                lemmaIdsLock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public int compareTo(IndexPageTask other) {
+            int byPriority = Integer.compare(other.job.getPriority(), job.getPriority());
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
     }
 
     private Response getTrueResponse() {
@@ -254,24 +844,15 @@ public class IndexingServiceImpl implements IndexingService {
     }
 
 
-    private void findLemmaInDb(Page page) {
-        Iterable<IndexSearch> indexSearches = indexSearchRepository.findByPageId(page.getId());
-        pageRepository.deleteById(page.getId());
-
-        for (IndexSearch indexSearch : indexSearches) {
-            int lemmaId = indexSearch.getLemma().getId();
-            Optional<Lemma> lemma = lemmaRepository.findById(lemmaId);
-            int frequency = lemma.get().getFrequency();
-            if (frequency >= 2) {
-                frequency = frequency - 1;
-                Lemma newLemma = lemma.get();
-                newLemma.setFrequency(frequency);
-                lemmaRepository.save(newLemma);
-            } else {
-                lemmaRepository.deleteById(lemmaId);
-            }
-            indexSearchRepository.deleteById(indexSearch.getId());
-        }
+    // Убирает страницу из индекса и из БД в одной транзакции вместе с её дубликатами; возвращает их пути
+    private List<String> removePage(Page page) {
+        return transactionTemplate.execute(status -> {
+            indexBackend.removePage(page);
+            List<String> duplicates = pageRepository.findDuplicatePaths(page.getId());
+            pageRepository.deleteDuplicates(page.getId());
+            pageRepository.deleteById(page.getId());
+            return duplicates;
+        });
     }
 
 
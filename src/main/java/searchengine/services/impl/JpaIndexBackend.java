@@ -0,0 +1,221 @@
+package searchengine.services.impl;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.model.IndexSearch;
+import searchengine.model.Lemma;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.model.SiteCount;
+import searchengine.repository.IndexSearchRepository;
+import searchengine.repository.LemmaRepository;
+import searchengine.repository.PageRepository;
+import searchengine.services.IndexBackend;
+import searchengine.utils.IndexSegment;
+import searchengine.utils.LemmaCounts;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Индекс в таблицах lemma и index_search. Частота леммы - число страниц сайта с ней.
+ */
+@Component
+@ConditionalOnProperty(prefix = "index", name = "backend", havingValue = "jpa", matchIfMissing = true)
+@RequiredArgsConstructor
+public class JpaIndexBackend implements IndexBackend {
+
+    // Строк индекса на странице - сотни, поэтому страниц в одной транзакции удаления меньше, чем лемм
+    private static final int DELETE_PAGES_CHUNK = 100;
+    private static final int DELETE_LEMMAS_CHUNK = 1000;
+    private static final int SNAPSHOT_LEMMAS_CHUNK = 1000;
+
+    private final LemmaRepository lemmaRepository;
+
+    private final IndexSearchRepository indexSearchRepository;
+
+    private final PageRepository pageRepository;
+
+    private final EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+
+    @Override
+    public void addPage(Page page, LemmaCounts lemmas) {
+        Site site = page.getSite();
+        for (int i = 0; i < lemmas.size(); i++) {
+            IndexSearch newIndex = new IndexSearch();
+            Lemma newLemma = new Lemma();
+            Optional<Lemma> lemma = lemmaRepository.findFirstByLemmaAndSiteId(lemmas.lemma(i), site.getId());
+
+            if (lemma.isEmpty()) {
+                newLemma.setLemma(lemmas.lemma(i));
+                newLemma.setSite(site);
+                // Частота - число страниц с леммой: removePage уменьшает её на единицу за страницу
+                newLemma.setFrequency(1);
+                newIndex.setPage(page);
+                newIndex.setLemma(newLemma);
+                newIndex.setRank((float) lemmas.count(i));
+
+                lemmaRepository.save(newLemma);
+                indexSearchRepository.save(newIndex);
+            } else {
+                lemma.get().setFrequency(lemma.get().getFrequency() + 1);
+                newIndex.setPage(page);
+                newIndex.setLemma(lemma.get());
+                newIndex.setRank((float) lemmas.count(i));
+                lemmaRepository.save(lemma.get());
+                indexSearchRepository.save(newIndex);
+            }
+        }
+    }
+
+    // Вызывается в транзакции удаления страницы: частоты лемм, строки индекса, леммы без страниц.
+    // Все запросы - по первичным ключам лемм страницы, без просмотра таблицы lemma
+    @Override
+    public void removePage(Page page) {
+        List<Integer> lemmaIds = indexSearchRepository.findLemmaIdsByPage(page.getId());
+        if (lemmaIds.isEmpty()) {
+            return;
+        }
+        lemmaRepository.decrementFrequencies(lemmaIds);
+        indexSearchRepository.deleteByPage(page.getId());
+        lemmaRepository.deleteUnusedIn(lemmaIds);
+    }
+
+    // Каждая часть - своя транзакция: удаление большого сайта не держит блокировки и журнал отката целиком.
+    // Прерванное удаление продолжит следующая сборка поколений
+    @Override
+    public void removeSite(Site site) {
+        List<Integer> pageIds = pageRepository.findIdsBySite(site.getId());
+        for (int from = 0; from < pageIds.size(); from += DELETE_PAGES_CHUNK) {
+            List<Integer> chunk = pageIds.subList(from, Math.min(from + DELETE_PAGES_CHUNK, pageIds.size()));
+            transactionTemplate.executeWithoutResult(status -> indexSearchRepository.deleteByPageIn(chunk));
+        }
+        List<Integer> lemmaIds = lemmaRepository.findIdsBySite(site.getId());
+        for (int from = 0; from < lemmaIds.size(); from += DELETE_LEMMAS_CHUNK) {
+            List<Integer> chunk = lemmaIds.subList(from, Math.min(from + DELETE_LEMMAS_CHUNK, lemmaIds.size()));
+            transactionTemplate.executeWithoutResult(status -> lemmaRepository.deleteByIdIn(chunk));
+        }
+    }
+
+    @Override
+    public Map<Integer, Long> documentFrequencies(String lemma, Collection<Integer> siteIds) {
+        if (siteIds.isEmpty()) {
+            return Map.of();
+        }
+        return toMap(lemmaRepository.sumFrequenciesBySite(lemma, siteIds));
+    }
+
+    @Override
+    public Map<Integer, Long> pageCounts(Collection<Integer> siteIds) {
+        Map<Integer, Long> counts = toMap(pageRepository.countBySite());
+        counts.keySet().retainAll(siteIds);
+        return counts;
+    }
+
+    @Override
+    public Map<Integer, Long> lemmaCounts() {
+        return toMap(lemmaRepository.countBySite());
+    }
+
+    @Override
+    public Collection<String> lemmas() {
+        return lemmaRepository.findAllLemmas();
+    }
+
+    // Строки лемм своих для каждого сайта, поэтому страницы выбираются по id строк без соединения с page
+    @Override
+    public int[] pageIds(String lemma, Collection<Integer> siteIds) {
+        if (siteIds.isEmpty()) {
+            return new int[0];
+        }
+        List<Integer> lemmaRowIds = lemmaRepository.findIds(lemma, siteIds);
+        if (lemmaRowIds.isEmpty()) {
+            return new int[0];
+        }
+        String sql = "SELECT DISTINCT isa.page_id " +
+                "FROM index_search AS isa " +
+                "WHERE isa.lemma_id IN (:lemmaIds) " +
+                "ORDER BY isa.page_id";
+        Query query = entityManager.createNativeQuery(sql);
+        query.setParameter("lemmaIds", lemmaRowIds);
+        List<?> results = query.getResultList();
+        return results.stream()
+                .mapToInt(r -> ((Number) r).intValue())
+                .toArray();
+    }
+
+    @Override
+    public Map<Integer, Float> rankSums(Collection<String> lemmas, Collection<Integer> siteIds, int[] pageIds) {
+        Map<Integer, Float> ranks = new HashMap<>();
+        if (lemmas.isEmpty() || siteIds.isEmpty() || pageIds.length == 0) {
+            return ranks;
+        }
+        // Только строки лемм видимых сайтов, а не всех сайтов и поколений
+        List<Integer> lemmaRowIds = lemmaRepository.findIds(lemmas, siteIds);
+        if (lemmaRowIds.isEmpty()) {
+            return ranks;
+        }
+        String sql = "SELECT isa.page_id, SUM(isa.rank) AS total_rank " +
+                "FROM index_search isa " +
+                "WHERE isa.lemma_id IN (:lemmaIds) " +
+                "AND isa.page_id IN (:pageIds) " +
+                "GROUP BY isa.page_id";
+        Query query = entityManager.createNativeQuery(sql);
+        query.setParameter("lemmaIds", lemmaRowIds);
+        query.setParameter("pageIds", Arrays.stream(pageIds).boxed().toList());
+        List<Object[]> results = query.getResultList();
+        for (Object[] result : results) {
+            ranks.put(((Number) result[0]).intValue(), ((Number) result[1]).floatValue());
+        }
+        return ranks;
+    }
+
+    // Постинги читаются частями по SNAPSHOT_LEMMAS_CHUNK лемм в порядке String.compareTo: сортировка
+    // в БД зависит от её правил сравнения (в MySQL "е" и "ё" могут оказаться равны), поэтому строки
+    // с леммой не из своей части, совпавшей с ней по правилам БД, пропускаются - их прочитает своя часть
+    @Override
+    public void postings(Collection<Integer> siteIds, PostingsConsumer consumer) throws IOException {
+        if (siteIds.isEmpty()) {
+            return;
+        }
+        List<String> lemmas = new ArrayList<>(lemmaRepository.findLemmas(siteIds));
+        Collections.sort(lemmas);
+        String sql = "SELECT l.lemma, isa.page_id, l.site_id, isa.rank " +
+                "FROM index_search isa " +
+                "JOIN lemma l ON isa.lemma_id = l.id " +
+                "WHERE l.site_id IN (:siteIds) AND l.lemma IN (:lemmas)";
+        for (int from = 0; from < lemmas.size(); from += SNAPSHOT_LEMMAS_CHUNK) {
+            List<String> chunk = lemmas.subList(from, Math.min(from + SNAPSHOT_LEMMAS_CHUNK, lemmas.size()));
+            Set<String> expected = new HashSet<>(chunk);
+            SortedMap<String, IndexSegment.Postings> postings = new TreeMap<>();
+            Query query = entityManager.createNativeQuery(sql);
+            query.setParameter("siteIds", siteIds);
+            query.setParameter("lemmas", chunk);
+            try (Stream<?> rows = query.getResultStream()) {
+                rows.forEach(row -> {
+                    Object[] columns = (Object[]) row;
+                    if (expected.contains((String) columns[0])) {
+                        postings.computeIfAbsent((String) columns[0], lemma -> new IndexSegment.Postings())
+                                .add(((Number) columns[1]).intValue(), ((Number) columns[2]).intValue(),
+                                        ((Number) columns[3]).floatValue());
+                    }
+                });
+            }
+            for (Map.Entry<String, IndexSegment.Postings> entry : postings.entrySet()) {
+                consumer.accept(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private Map<Integer, Long> toMap(List<SiteCount> counts) {
+        return counts.stream().collect(Collectors.toMap(SiteCount::getSiteId, SiteCount::getCount));
+    }
+}
@@ -0,0 +1,23 @@
+package searchengine.services.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import searchengine.services.IndexBackend;
+import searchengine.utils.LemmaIds;
+
+/**
+ * Заполняет общий словарь лемм {@link LemmaIds} леммами, уже сохранёнными в индексе.
+ */
+@Component
+@RequiredArgsConstructor
+public class LemmaIdsLoader {
+
+    private final IndexBackend indexBackend;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        LemmaIds.load(indexBackend.lemmas());
+    }
+}
@@ -1,29 +1,39 @@
 package searchengine.services.impl;
 
-import jakarta.persistence.EntityManager;
-import jakarta.persistence.Query;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
-import org.apache.lucene.morphology.WrongCharaterException;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import searchengine.config.SearchSettings;
 import searchengine.dto.SearchResponse;
-import searchengine.model.Lemma;
+import searchengine.dto.SearchTrace;
 import searchengine.model.Page;
 import searchengine.model.SearchData;
-import searchengine.repository.LemmaRepository;
+import searchengine.model.Site;
 import searchengine.repository.PageRepository;
 import searchengine.repository.SiteRepository;
+import searchengine.services.IndexBackend;
 import searchengine.services.SearchService;
 import searchengine.utils.LemmaFinder;
 import searchengine.utils.LemmaFinderEn;
+import searchengine.utils.LemmaIds;
 import searchengine.utils.PageSnippet;
+import searchengine.utils.PhraseMatcher;
+import searchengine.utils.SnippetBuilder;
 import searchengine.utils.TextUtils;
 
 import java.io.IOException;
 import java.util.*;
-import java.util.regex.Pattern;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @RequiredArgsConstructor
@@ -34,26 +44,55 @@ public class SearchServiceImpl implements SearchService {
 
     private final PageRepository pageRepository;
 
-    private final LemmaRepository lemmaRepository;
+    private final IndexBackend indexBackend;
 
-    private final EntityManager entityManager;
+    private final SearchSettings searchSettings;
+
+    private final ObjectMapper objectMapper;
 
     private static final double REPETITION_PERCENTAGE = 0.9;
 
+    // Время поиска целиком и по этапам, экспортируется через /actuator/prometheus
+    private static final Timer SEARCH_TIMER = Metrics.timer("searchengine.search");
+    private static final Map<String, Timer> STAGE_TIMERS = new ConcurrentHashMap<>();
+
+    private static final Logger SLOW_QUERY_LOG = LoggerFactory.getLogger("searchengine.slowquery");
+
     @Override
     @SneakyThrows
-    public SearchResponse search(String query, String site, Integer offset, Integer limit) {
+    public SearchResponse search(String query, String site, Integer offset, Integer limit, boolean debug) {
+        SearchTrace trace = new SearchTrace();
+        long start = System.nanoTime();
+        SearchResponse response = doSearch(query, site, offset, limit, trace);
+        long elapsed = System.nanoTime() - start;
+
+        SEARCH_TIMER.record(elapsed, TimeUnit.NANOSECONDS);
+        trace.setTotalMillis(elapsed / 1_000_000.0);
+        if (trace.getTotalMillis() >= searchSettings.getSlowQueryMillis()) {
+            logSlowQuery(query, site, offset, limit, trace);
+        }
+        if (debug) {
+            response.setTrace(trace);
+        }
+        return response;
+    }
+
+    private SearchResponse doSearch(String query, String site, Integer offset, Integer limit,
+                                    SearchTrace trace) throws Exception {
         if (query.isEmpty()) {
             return getErrorSearchResponse("Задан пустой поисковый запрос");
         }
 
         // Получаем леммы из запроса (обрабатываем слова раздельно, независимо от языка)
-        Set<String> lemmasFromQuery = getLemmasFromQuery(query);
+        Set<String> lemmasFromQuery = stage("query_lemmas", trace, () -> getLemmasFromQuery(query));
+
+        // Поиск идёт по видимым поколениям заданного сайта или всех сайтов
+        List<Integer> siteIds = getSiteIds(site);
 
         // Фильтруем леммы по принадлежности к сайту и порогу повторяемости
-        filterLemmas(lemmasFromQuery, site);
+        Map<String, Long> frequencies = stage("filter_lemmas", trace, () -> filterLemmas(lemmasFromQuery, siteIds));
 
-        if (lemmasFromQuery.isEmpty()) {
+        if (frequencies.isEmpty()) {
             return SearchResponse.builder()
                     .result(true)
                     .count(0)
@@ -62,25 +101,28 @@ public class SearchServiceImpl implements SearchService {
         }
 
         // Сортируем леммы по возрастанию частоты встречаемости
-        List<String> sortedLemmas = getSortedLemmasByFrequencyAsc(lemmasFromQuery);
-
-        // Определяем siteId, если задан сайт
-        Integer siteId = (site != null) ? siteRepository.findByUrl(site).getId() : null;
+        List<String> sortedLemmas = stage("sort_lemmas", trace, () -> getSortedLemmasByFrequencyAsc(frequencies, trace));
+        // Номера лемм запроса в общем словаре - для проверки слов страниц
+        BitSet queryLemmaIds = LemmaIds.idSet(sortedLemmas);
 
-        // Для первой (самой редкой) леммы находим все id страниц, на которых она встречается
-        Set<Integer> resultPageIds = getPageIdsByLemma(sortedLemmas.get(0), siteId);
+        // Для первой (самой редкой) леммы находим все id страниц, на которых она встречается;
+        // списки id отсортированы, пересечение - слиянием массивов
+        int[] resultPageIds = stage("page_ids", trace, () -> indexBackend.pageIds(sortedLemmas.get(0), siteIds));
+        trace.getIntersectionSizes().add(resultPageIds.length);
 
         // Для каждой следующей леммы пересекаем найденный набор страниц с новыми
         for (int i = 1; i < sortedLemmas.size(); i++) {
-            Set<Integer> lemmaPageIds = getPageIdsByLemma(sortedLemmas.get(i), siteId);
-            resultPageIds.retainAll(lemmaPageIds);
-            if (resultPageIds.isEmpty()) {
+            String lemma = sortedLemmas.get(i);
+            int[] lemmaPageIds = stage("page_ids", trace, () -> indexBackend.pageIds(lemma, siteIds));
+            resultPageIds = intersect(resultPageIds, lemmaPageIds);
+            trace.getIntersectionSizes().add(resultPageIds.length);
+            if (resultPageIds.length == 0) {
                 break;
             }
         }
 
         // Если после пересечений страниц не осталось, возвращаем пустой список
-        if (resultPageIds.isEmpty()) {
+        if (resultPageIds.length == 0) {
             return SearchResponse.builder()
                     .result(true)
                     .count(0)
@@ -89,24 +131,26 @@ public class SearchServiceImpl implements SearchService {
         }
 
         // Загружаем объекты Page по найденным идентификаторам
-        List<Page> pages = pageRepository.findAllByIdIn(resultPageIds);
+        Set<Integer> pageIds = Arrays.stream(resultPageIds).boxed().collect(Collectors.toSet());
+        List<Page> pages = stage("load_pages", trace, () -> pageRepository.findAllByIdIn(pageIds));
+        trace.setPagesParsed(pages.size());
 
         // Получаем множество слов (из страниц), соответствующих списку искомых лемм
-        Set<String> matchingWords = extractMatchingWords(pages, sortedLemmas);
+        Set<String> foundWords = stage("matching_words", trace, () -> extractMatchingWords(pages, queryLemmaIds));
 
         // Добавляем копии искомых слов с заглавной буквы
-        matchingWords = expandMatchingWords(matchingWords);
+        Set<String> matchingWords = expandMatchingWords(foundWords);
 
         // Получаем сниппеты
-        List<PageSnippet> snippets = getSnippets(pages, matchingWords);
-
-        List<Lemma> lemmas = lemmaRepository.findByLemmaIn(sortedLemmas);
+        List<PageSnippet> snippets = stage("snippets", trace, () -> getSnippets(pages, matchingWords));
 
         // Получаем относительную релевантность страниц
-        Map<Integer, Float> relativeRelevance = getRelativeRelevance(lemmas, pages);
+        Map<Integer, Float> relativeRelevance = stage("relevance", trace,
+                () -> getRelativeRelevance(sortedLemmas, siteIds, queryLemmaIds, pages));
 
         // Формируем поисковую выдачу
-        List<SearchData> searchDataList = getSearchData(snippets, pageRepository, relativeRelevance);
+        List<SearchData> searchDataList = stage("search_data", trace,
+                () -> getSearchData(snippets, pageRepository, relativeRelevance));
 
         int totalCount = searchDataList.size();
 
@@ -130,6 +174,38 @@ public class SearchServiceImpl implements SearchService {
                 .build();
     }
 
+    // Выполняет этап поиска, записывая его время и в метрики, и в трассировку запроса
+    private <T> T stage(String name, SearchTrace trace, Callable<T> callable) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return callable.call();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            STAGE_TIMERS.computeIfAbsent(name, SearchServiceImpl::stageTimer).record(elapsed, TimeUnit.NANOSECONDS);
+            trace.addPhase(name, elapsed);
+        }
+    }
+
+    private static Timer stageTimer(String stage) {
+        return Timer.builder("searchengine.search.stage")
+                .tag("stage", stage)
+                .register(Metrics.globalRegistry);
+    }
+
+    private void logSlowQuery(String query, String site, Integer offset, Integer limit, SearchTrace trace) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("query", query);
+        entry.put("site", site);
+        entry.put("offset", offset);
+        entry.put("limit", limit);
+        entry.put("trace", trace);
+        try {
+            SLOW_QUERY_LOG.warn(objectMapper.writeValueAsString(entry));
+        } catch (JsonProcessingException e) {
+            SLOW_QUERY_LOG.warn("Медленный запрос \"{}\": {} мс", query, trace.getTotalMillis());
+        }
+    }
+
     private List<SearchData> getSearchData(List<PageSnippet> snippets, PageRepository pages, Map<Integer, Float> relevance) {
         List<SearchData> searchDataList = new ArrayList<>();
 
@@ -209,8 +285,10 @@ public class SearchServiceImpl implements SearchService {
     }
 
     // Метод для извлечения слов из страниц, соответствующих искомым леммам
-    private Set<String> extractMatchingWords(List<Page> pages, List<String> sortedLemmas) {
+    private Set<String> extractMatchingWords(List<Page> pages, BitSet queryLemmaIds) {
         Set<String> resultSet = new HashSet<>();
+        // Одни и те же слова повторяются на всех страницах: каждое разбираем один раз
+        Set<String> checkedWords = new HashSet<>();
         LemmaFinder russianMorph;
         LemmaFinderEn englishMorph;
         try {
@@ -226,12 +304,12 @@ public class SearchServiceImpl implements SearchService {
 
             for (String word : words) {
                 String normalizedWord = TextUtils.normalizeWord(word);
-                if (normalizedWord.isEmpty()) {
+                if (normalizedWord.isEmpty() || !checkedWords.add(normalizedWord)) {
                     continue;
                 }
                 Set<String> wordLemmas = getLemmasForWord(normalizedWord, russianMorph, englishMorph);
                 for (String lemma : wordLemmas) {
-                    if (sortedLemmas.contains(lemma)) {
+                    if (PhraseMatcher.containsLemma(queryLemmaIds, lemma)) {
                         resultSet.add(normalizedWord);
                         break;
                     }
@@ -249,110 +327,73 @@ public class SearchServiceImpl implements SearchService {
                 .build();
     }
 
-    // Фильтруем леммы по принадлежности к сайту и по порогу повторяемости
-    public void filterLemmas(Set<String> lemmasFromQuery, String website) {
-        Set<String> lemmasToRemove = new HashSet<>();
-        Integer siteId = (website != null) ? siteRepository.findByUrl(website).getId() : null;
+    private List<Integer> getSiteIds(String site) {
+        if (site != null) {
+            return List.of(siteRepository.findByUrlAndHiddenFalse(site).getId());
+        }
+        return siteRepository.findAllByHiddenFalse().stream().map(Site::getId).toList();
+    }
 
-        for (String lemma : lemmasFromQuery) {
-            String sql =
-                    "SELECT " +
-                            " l.lemma, " +
-                            " p.site_id, " +
-                            " COUNT(*) AS repetition_count, " +
-                            " (SELECT COUNT(*) FROM page WHERE site_id = p.site_id) AS total_pages_on_site " +
-                            "FROM " +
-                            " index_search AS isa " +
-                            "JOIN " +
-                            " page p ON isa.page_id = p.id " +
-                            "JOIN " +
-                            " lemma l ON isa.lemma_id = l.id " +
-                            "WHERE " +
-                            " l.lemma = :lemma " +
-                            (website != null ? "AND p.site_id = :siteId " : "") +
-                            "GROUP BY " +
-                            " p.site_id, l.lemma";
-
-            Query query = entityManager.createNativeQuery(sql);
-            query.setParameter("lemma", lemma);
-            if (siteId != null) {
-                query.setParameter("siteId", siteId);
-            }
-            List<Object[]> results = query.getResultList();
+    // Фильтруем леммы по принадлежности к сайту и по порогу повторяемости;
+    // возвращает для оставшихся лемм число страниц с ними на всех сайтах
+    public Map<String, Long> filterLemmas(Set<String> lemmasFromQuery, List<Integer> siteIds) {
+        Map<String, Long> frequencies = new HashMap<>();
+        Map<Integer, Long> totalPagesOnSites = indexBackend.pageCounts(siteIds);
 
-            if (results.isEmpty()) {
-                lemmasToRemove.add(lemma);
+        for (String lemma : lemmasFromQuery) {
+            Map<Integer, Long> repetitionCounts = indexBackend.documentFrequencies(lemma, siteIds);
+            if (repetitionCounts.isEmpty()) {
                 continue;
             }
 
-            for (Object[] result : results) {
-                Integer foundSiteId = (Integer) result[1];
-                if (siteId != null && !siteId.equals(foundSiteId)) {
-                    lemmasToRemove.add(lemma);
-                    continue;
-                }
-                Number repetitionCount = (Number) result[2];
-                Number totalPagesOnSite = (Number) result[3];
-                if (repetitionCount != null && totalPagesOnSite != null) {
-                    double repetitionPercentage = repetitionCount.doubleValue() / totalPagesOnSite.doubleValue();
-                    if (repetitionPercentage > REPETITION_PERCENTAGE) {
-                        lemmasToRemove.add(lemma);
-                    }
+            boolean tooFrequent = false;
+            for (Map.Entry<Integer, Long> entry : repetitionCounts.entrySet()) {
+                Long totalPagesOnSite = totalPagesOnSites.get(entry.getKey());
+                if (totalPagesOnSite != null && totalPagesOnSite > 0) {
+                    double repetitionPercentage = entry.getValue().doubleValue() / totalPagesOnSite.doubleValue();
+                    tooFrequent |= repetitionPercentage > REPETITION_PERCENTAGE;
                 }
             }
+            if (!tooFrequent) {
+                frequencies.put(lemma, repetitionCounts.values().stream().mapToLong(Long::longValue).sum());
+            }
         }
-        lemmasFromQuery.removeAll(lemmasToRemove);
+        lemmasFromQuery.retainAll(frequencies.keySet());
+        return frequencies;
     }
 
     // Сортируем леммы в порядке увеличения частоты встречаемости
-    public List<String> getSortedLemmasByFrequencyAsc(Set<String> lemmasFromQuery) {
-        return lemmaRepository.findAndSortByFrequencyAsc(lemmasFromQuery)
-                .stream()
-                .map(Lemma::getLemma)
-                .collect(Collectors.toList());
+    public List<String> getSortedLemmasByFrequencyAsc(Map<String, Long> frequencies, SearchTrace trace) {
+        frequencies.forEach((lemma, frequency) -> trace.getLemmaFrequencies().merge(lemma, frequency.intValue(), Integer::sum));
+        return frequencies.entrySet().stream()
+                .sorted(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey)
+                .toList();
     }
 
-    // Получаем id страниц по заданной лемме
-    private Set<Integer> getPageIdsByLemma(String lemma, Integer siteId) {
-        String sql = "SELECT p.id " +
-                "FROM index_search AS isa " +
-                "JOIN page p ON isa.page_id = p.id " +
-                "JOIN lemma l ON isa.lemma_id = l.id " +
-                "WHERE l.lemma = :lemma " +
-                (siteId != null ? "AND p.site_id = :siteId" : "");
-        Query query = entityManager.createNativeQuery(sql);
-        query.setParameter("lemma", lemma);
-        if (siteId != null) {
-            query.setParameter("siteId", siteId);
+    // Пересечение отсортированных массивов id
+    private static int[] intersect(int[] first, int[] second) {
+        int[] result = new int[Math.min(first.length, second.length)];
+        int size = 0;
+        for (int i = 0, j = 0; i < first.length && j < second.length; ) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                result[size++] = first[i];
+                i++;
+                j++;
+            }
         }
-        List<?> results = query.getResultList();
-        return results.stream()
-                .map(r -> ((Number) r).intValue())
-                .collect(Collectors.toSet());
+        return Arrays.copyOf(result, size);
     }
 
     private List<PageSnippet> getSnippets(List<Page> pages, Set<String> matchingWords) {
         List<PageSnippet> snippets = new ArrayList<>();
         for (Page page : pages) {
             String text = Jsoup.parse(page.getContent()).body().text();
-            String[] sentences = text.split("(?<=[.!?])\\s+"); // разбиваем на предложения
-            List<String> snippetList = new ArrayList<>();
-
-            for (String sentence : sentences) {
-                String lowerCaseSentence = sentence.toLowerCase();
-                boolean containsMatch = matchingWords.stream()
-                        .anyMatch(word -> lowerCaseSentence.contains(word.toLowerCase()));
-
-                if (containsMatch) {
-                    String highlighted = highlightWords(sentence, matchingWords);
-
-                    if (highlighted.length() > 150) {
-                        highlighted = trimAroundFirstMatch(highlighted, matchingWords, 150);
-                    }
-
-                    snippetList.add(highlighted);
-                }
-            }
+            List<String> snippetList = SnippetBuilder.buildSnippets(text, matchingWords);
 
             if (!snippetList.isEmpty()) {
                 PageSnippet pageSnippet = new PageSnippet();
@@ -364,64 +405,6 @@ public class SearchServiceImpl implements SearchService {
         return snippets;
     }
 
-    private String highlightWords(String sentence, Set<String> matchingWords) {
-        String highlighted = sentence;
-        for (String word : matchingWords) {
-            highlighted = highlighted.replaceAll("(?i)(" + Pattern.quote(word) + ")", "<b>$1</b>");
-        }
-        return highlighted;
-    }
-
-    private String trimAroundFirstMatch(String text, Set<String> matchingWords, int maxLength) {
-        String lowerText = text.toLowerCase();
-        int firstMatchIndex = findFirstMatchIndex(text, matchingWords);
-
-        if (firstMatchIndex == -1) {
-            return text.length() <= maxLength ? text : text.substring(0, maxLength) + "...";
-        }
-
-        int start = Math.max(0, firstMatchIndex - maxLength / 2);
-        int end = Math.min(text.length(), start + maxLength);
-
-        String trimmed = text.substring(start, end);
-
-        // Обрезаем аккуратно по словам
-        trimmed = adjustToWordBoundaries(trimmed);
-
-        if (start > 0 || end < text.length()) {
-            trimmed = "..." + trimmed + "...";
-        }
-
-        return trimmed;
-    }
-
-    private int findFirstMatchIndex(String text, Set<String> matchingWords) {
-        String lowerText = text.toLowerCase();
-        int minIndex = Integer.MAX_VALUE;
-        for (String word : matchingWords) {
-            int idx = lowerText.indexOf(word.toLowerCase());
-            if (idx != -1 && idx < minIndex) {
-                minIndex = idx;
-            }
-        }
-        return minIndex == Integer.MAX_VALUE ? -1 : minIndex;
-    }
-
-    private String adjustToWordBoundaries(String text) {
-        // Убираем обрыв слов с краёв
-        int start = 0;
-        int end = text.length();
-
-        while (start < end && !Character.isWhitespace(text.charAt(start))) {
-            start++;
-        }
-        while (end > start && !Character.isWhitespace(text.charAt(end - 1))) {
-            end--;
-        }
-
-        return text.substring(start, end).trim();
-    }
-
     private Set<String> expandMatchingWords(Set<String> matchingWords) {
         Set<String> expandedWords = new HashSet<>(matchingWords);
         for (String word : matchingWords) {
@@ -433,53 +416,24 @@ public class SearchServiceImpl implements SearchService {
         return expandedWords;
     }
 
-    private Map<Integer, Float> getRelativeRelevance(List<Lemma> foundLemmas, List<Page> pages) throws IOException {
-        Map<Integer, Float> pageRank = new HashMap<>();
+    private Map<Integer, Float> getRelativeRelevance(List<String> foundLemmas, List<Integer> siteIds,
+                                                     BitSet queryLemmaIds, List<Page> pages) throws IOException {
         Map<Integer, String> pageContent = new HashMap<>();
 
-        // Получаем список ID лемм
-        List<Integer> lemmaIds = foundLemmas.stream()
-                .map(Lemma::getId)
-                .collect(Collectors.toList());
         // Получаем список ID страниц
-        List<Integer> pageIds = pages.stream()
-                .map(Page::getId)
-                .toList();
+        int[] pageIds = pages.stream()
+                .mapToInt(Page::getId)
+                .toArray();
 
-        // Получаем список лемм
-        List<String> lemmaList = foundLemmas.stream()
-                .map(Lemma::getLemma)
-                .toList();
+        // Сумма рангов лемм по страницам; содержимое берём из уже загруженных страниц,
+        // чтобы не читать его второй раз
+        Map<Integer, Float> pageRank = indexBackend.rankSums(foundLemmas, siteIds, pageIds);
 
-        if (lemmaIds.isEmpty()) {
-            return pageRank; // Если список лемм пуст, сразу возвращаем пустую карту
-        }
+        Map<Integer, Page> pagesById = pages.stream()
+                .collect(Collectors.toMap(Page::getId, page -> page));
 
-        // SQL-запрос для получения суммы рангов и содержимого страниц
-        String sql = "SELECT isa.page_id, SUM(isa.rank) AS total_rank, p.content " +
-                "FROM index_search isa " +
-                "JOIN page p ON p.id = isa.page_id " +
-                "WHERE isa.lemma_id IN (:lemmaIds) " +
-                "AND p.id IN (:pageIds) " +
-                "GROUP BY isa.page_id, p.content";
-
-        // Создание и выполнение запроса
-        Query query = entityManager.createNativeQuery(sql);
-        query.setParameter("lemmaIds", lemmaIds);
-        query.setParameter("pageIds", pageIds);
-        List<Object[]> results = query.getResultList();
-
-        // Обрабатываем результаты запроса
-        for (Object[] result : results) {
-            int pageId = ((Number) result[0]).intValue();
-            float rank = ((Number) result[1]).floatValue();
-            String content = (String) result[2];  // Содержимое страницы
-
-            content = Jsoup.parse(content).body().text();
-
-            // Сохраняем результаты
-            pageRank.put(pageId, rank);
-            pageContent.put(pageId, content);
+        for (Integer pageId : pageRank.keySet()) {
+            pageContent.put(pageId, Jsoup.parse(pagesById.get(pageId).getContent()).body().text());
         }
 
         Map<Integer, Map<Integer, String>> lemmasPositionsForPage = new HashMap<>();
@@ -491,12 +445,12 @@ public class SearchServiceImpl implements SearchService {
             int pageId = entry.getKey();
             String content = entry.getValue();
 
-            Map <Integer, String> positionsOfLemmas = lemmasPositions(content, lemmaFinderRu, lemmaFinderEn, lemmaList);
+            Map<Integer, String> positionsOfLemmas = PhraseMatcher.lemmasPositions(content, lemmaFinderRu, lemmaFinderEn, queryLemmaIds);
 
             // Если найдено точное совпадение лемм, идущих друг за другом в поисковом запросе,
             // то присвоить данной странице максимальную релевантность
-            if (lemmaList.size() < 3) continue;
-            if (hasConsecutiveWords(positionsOfLemmas, content, lemmaFinderRu, lemmaFinderEn)) {
+            if (queryLemmaIds.cardinality() < 3) continue;
+            if (PhraseMatcher.hasConsecutiveWords(positionsOfLemmas, content, lemmaFinderRu, lemmaFinderEn)) {
                 pageRank.put(
                         pageId,
                         pageRank.values().stream()
@@ -517,110 +471,4 @@ public class SearchServiceImpl implements SearchService {
 
         return pageRank;  // Возвращаем нормализованные ранги страниц
     }
-
-    // Определяем позиции найденных лемм в тексте
-    private HashMap<Integer, String> lemmasPositions(String content, LemmaFinder lemmaFinderRu,
-                                                    LemmaFinderEn lemmaFinderEn, List<String> lemmaList) {
-        HashMap<Integer, String> positionOfLemma = new HashMap<>();
-
-        // Разбиваем контент на слова и нормализуем
-        String[] words = content.split("\s+");
-
-        for (String word : words) {
-            String normalizedWord = TextUtils.normalizeWord(word);
-            int index = content.indexOf(word);
-
-            if (TextUtils.isRussian(normalizedWord)) {
-                String lemma = lemmaFinderRu.getLemma(normalizedWord);
-                if (lemmaList.contains(lemma)) {
-                    while (index != -1) {
-                        positionOfLemma.put(index, normalizedWord);
-                        index = content.indexOf(word, index + 1);
-                    }
-                }
-            } else if (TextUtils.isEnglish(normalizedWord)) {
-                String lemma = lemmaFinderEn.getLemma(normalizedWord);
-                if (lemmaList.contains(lemma)) {
-                    while (index != -1) {
-                        positionOfLemma.put(index, normalizedWord);
-                        index = content.indexOf(word, index + 1);
-                    }
-                }
-            }
-        }
-        return positionOfLemma;
-    }
-
-    // Определяем есть ли последовательности найденных форм лемм
-    private boolean hasConsecutiveWords(Map<Integer, String> positionsOfLemmas, String content,
-                                        LemmaFinder lemmaFinder, LemmaFinderEn lemmaFinderEn) {
-        List<Integer> positions = new ArrayList<>(positionsOfLemmas.keySet());
-        Collections.sort(positions);
-
-        int consecutiveCount = 1;
-
-        for (int i = 1; i < positions.size(); i++) {
-            int prevPos = positions.get(i - 1);
-            int currPos = positions.get(i);
-
-            // Находим реальную длину слова в тексте
-            int wordEnd = prevPos;
-            while (wordEnd < content.length() && !Character.isWhitespace(content.charAt(wordEnd))) {
-                wordEnd++;
-            }
-
-            int begin = wordEnd;
-            int end = currPos;
-
-            if (begin >= end) continue;
-
-            String betweenText = content.substring(begin, end).trim();
-            if (betweenText.isEmpty()) {
-                consecutiveCount++;
-            } else {
-                // Убираем кавычки
-                betweenText = betweenText.replaceAll("[\"«»„“]", "").trim();
-
-                if (betweenText.isEmpty()) {
-                    consecutiveCount++;
-                    continue;
-                }
-
-                String[] wordsBetween = betweenText.split("\\s+");
-                boolean allParticlesOrQuotes = true;
-
-                for (String word : wordsBetween) {
-                    if (word.isBlank()) continue;
-
-                    word = TextUtils.normalizeWord(word);
-                    if (word.isBlank()) continue;
-
-                    try {
-                        boolean isRussian = TextUtils.isRussian(word);
-                        boolean isParticle = isRussian
-                                ? lemmaFinder.anyWordBaseBelongToParticle(lemmaFinder.luceneMorphology.getMorphInfo(word))
-                                : lemmaFinderEn.anyWordBaseBelongToParticle(lemmaFinderEn.luceneMorphology.getMorphInfo(word));
-
-                        if (!isParticle) {
-                            allParticlesOrQuotes = false;
-                            break;
-                        }
-                    } catch (ArrayIndexOutOfBoundsException | WrongCharaterException e) {
-                        System.out.println("Ошибка при анализе слова: " + word + " — " + e.getClass().getSimpleName());
-                    }
-                }
-
-                if (allParticlesOrQuotes) {
-                    consecutiveCount++;
-                } else {
-                    consecutiveCount = 1;
-                }
-            }
-
-            if (consecutiveCount >= 3) {
-                return true;
-            }
-        }
-        return false;
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,743 @@
+package searchengine.services.impl;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import searchengine.config.IndexSettings;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.services.IndexBackend;
+import searchengine.utils.IndexSegment;
+import searchengine.utils.IndexSnapshot;
+import searchengine.utils.LemmaCounts;
+import searchengine.utils.LemmaIds;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Встроенный индекс без БД: неизменяемые сегменты {@link IndexSegment}, отображённые в память, и буфер записи.
+ * <p>
+ * Новые постинги копятся в буфере и видны поиску сразу; буфер записывается новым сегментом, когда набирает
+ * index.flush-postings постингов, и по таймеру. Удалённая страница сначала только помечается: её постинги
+ * пропускаются при чтении, а в файлах исчезают при слиянии сегментов, которое идёт в фоне, не блокируя поиск.
+ * Список действующих сегментов хранится в файле segments и заменяется атомарно; файлы, которых в нём нет
+ * (недописанные или уже слитые), при запуске удаляются. Постинги, не успевшие попасть в сегмент,
+ * при аварийной остановке теряются - не больше, чем за index.flush-interval-seconds.
+ */
+@Component
+@ConditionalOnProperty(prefix = "index", name = "backend", havingValue = "segments")
+@RequiredArgsConstructor
+public class SegmentIndexBackend implements IndexBackend {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SegmentIndexBackend.class);
+
+    private static final String MANIFEST = "segments";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final IndexSettings settings;
+
+    // Чтения идут параллельно; запись в буфер, сброс буфера и замена сегментов после слияния - по одной
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Path directory;
+    private List<IndexSegment> segments = new ArrayList<>();
+    private long nextSegment;
+
+    // Буфер записи: постинги по леммам, добавленные и удалённые с последнего сброса страницы
+    private final SortedMap<String, IndexSegment.Postings> buffer = new TreeMap<>();
+    private final List<Integer> bufferedPages = new ArrayList<>();
+    private final List<Integer> bufferedPageSites = new ArrayList<>();
+    private final List<Integer> bufferedDeletes = new ArrayList<>();
+    private int bufferedPostings;
+
+    // Сайт каждой страницы в индексе по id страницы (0 - страницы нет) и число страниц сайтов
+    private int[] pageSites = new int[1024];
+    private final Map<Integer, Long> sitePages = new HashMap<>();
+
+    // Число разных лемм сайтов ведётся при записи, без прохода по постингам: номера лемм (LemmaIds) каждой
+    // страницы индекса, чтобы удаление страницы их вычло, и число страниц сайта с каждой леммой
+    private int[][] pageLemmas = new int[1024][];
+    private final Map<Integer, int[]> siteLemmaPages = new HashMap<>();
+    private final Map<Integer, Long> siteLemmaCounts = new HashMap<>();
+
+    private ScheduledExecutorService maintenance;
+
+    @PostConstruct
+    void open() throws IOException {
+        directory = Path.of(settings.getSegmentDir());
+        Files.createDirectories(directory);
+
+        Path manifest = directory.resolve(MANIFEST);
+        List<String> names = Files.exists(manifest)
+                ? Files.readAllLines(manifest, StandardCharsets.UTF_8).stream().filter(name -> !name.isBlank()).toList()
+                : List.of();
+        for (String name : names) {
+            segments.add(IndexSegment.open(directory.resolve(name)));
+            nextSegment = Math.max(nextSegment, Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())) + 1);
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .filter(file -> !names.contains(file.getFileName().toString()))
+                    .forEach(this::deleteQuietly);
+        }
+
+        // id страниц не переиспользуются, поэтому удаления применяются после всех добавлений
+        for (IndexSegment segment : segments) {
+            for (int i = 0; i < segment.pageCount(); i++) {
+                markPage(segment.pageId(i), segment.pageSite(i));
+            }
+        }
+        for (IndexSegment segment : segments) {
+            for (int i = 0; i < segment.deleteCount(); i++) {
+                unmarkPage(segment.deleted(i));
+            }
+        }
+        countLemmas(readPageLemmas(segments, pageSites));
+
+        maintenance = Executors.newSingleThreadScheduledExecutor();
+        long interval = settings.getFlushIntervalSeconds();
+        maintenance.scheduleWithFixedDelay(this::flushAndMerge, interval, interval, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    void close() {
+        maintenance.shutdownNow();
+        lock.writeLock().lock();
+        try {
+            flush();
+        } catch (IOException e) {
+            LOG.error("Не удалось записать буфер индекса", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void addPage(Page page, LemmaCounts lemmas) {
+        int pageId = page.getId();
+        int siteId = page.getSite().getId();
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < lemmas.size(); i++) {
+                buffer.computeIfAbsent(lemmas.lemma(i), lemma -> new IndexSegment.Postings())
+                        .add(pageId, siteId, (float) lemmas.count(i));
+            }
+            bufferedPostings += lemmas.size();
+            bufferedPages.add(pageId);
+            bufferedPageSites.add(siteId);
+            unmarkPage(pageId);
+            markPage(pageId, siteId);
+            int[] lemmaIds = new int[lemmas.size()];
+            for (int i = 0; i < lemmas.size(); i++) {
+                lemmaIds[i] = lemmas.id(i);
+            }
+            countLemmas(pageId, siteId, lemmaIds);
+            if (bufferedPostings >= settings.getFlushPostings()) {
+                flush();
+                maintenance.execute(this::merge);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Не удалось записать сегмент индекса: " + e.getMessage(), e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removePage(Page page) {
+        lock.writeLock().lock();
+        try {
+            if (unmarkPage(page.getId())) {
+                bufferedDeletes.add(page.getId());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeSite(Site site) {
+        lock.writeLock().lock();
+        try {
+            for (int pageId = 0; pageId < pageSites.length; pageId++) {
+                if (pageSites[pageId] == site.getId() && unmarkPage(pageId)) {
+                    bufferedDeletes.add(pageId);
+                }
+            }
+            sitePages.remove(site.getId());
+            siteLemmaPages.remove(site.getId());
+            siteLemmaCounts.remove(site.getId());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<Integer, Long> documentFrequencies(String lemma, Collection<Integer> siteIds) {
+        Map<Integer, Long> frequencies = new HashMap<>();
+        readPostings(lemma, (page, site, rank) -> {
+            if (siteIds.contains(site)) {
+                frequencies.merge(site, 1L, Long::sum);
+            }
+        });
+        return frequencies;
+    }
+
+    @Override
+    public Map<Integer, Long> pageCounts(Collection<Integer> siteIds) {
+        lock.readLock().lock();
+        try {
+            Map<Integer, Long> counts = new HashMap<>();
+            for (Integer siteId : siteIds) {
+                Long count = sitePages.get(siteId);
+                if (count != null) {
+                    counts.put(siteId, count);
+                }
+            }
+            return counts;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<Integer, Long> lemmaCounts() {
+        lock.readLock().lock();
+        try {
+            return new HashMap<>(siteLemmaCounts);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Collection<String> lemmas() {
+        lock.readLock().lock();
+        try {
+            Set<String> lemmas = new HashSet<>(buffer.keySet());
+            for (IndexSegment segment : segments) {
+                for (int i = 0; i < segment.lemmaCount(); i++) {
+                    lemmas.add(segment.lemma(i));
+                }
+            }
+            return lemmas;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int[] pageIds(String lemma, Collection<Integer> siteIds) {
+        int[][] pages = {new int[16]};
+        int[] size = {0};
+        readPostings(lemma, (page, site, rank) -> {
+            if (siteIds.contains(site)) {
+                if (size[0] == pages[0].length) {
+                    pages[0] = Arrays.copyOf(pages[0], size[0] * 2);
+                }
+                pages[0][size[0]++] = page;
+            }
+        });
+        // Страница попадает в индекс один раз, поэтому повторов нет; сегменты перемешивают порядок
+        int[] result = Arrays.copyOf(pages[0], size[0]);
+        Arrays.sort(result);
+        return result;
+    }
+
+    @Override
+    public Map<Integer, Float> rankSums(Collection<String> lemmas, Collection<Integer> siteIds, int[] pageIds) {
+        int[] sorted = pageIds.clone();
+        Arrays.sort(sorted);
+        Map<Integer, Float> ranks = new HashMap<>();
+        for (String lemma : lemmas) {
+            readPostings(lemma, (page, site, rank) -> {
+                if (siteIds.contains(site) && Arrays.binarySearch(sorted, page) >= 0) {
+                    ranks.merge(page, rank, Float::sum);
+                }
+            });
+        }
+        return ranks;
+    }
+
+    /**
+     * Сливает леммы всех сегментов и буфера по алфавиту, как слияние сегментов, но без записи: в памяти
+     * только постинги текущей леммы. Сегменты неизменяемы и отображены в память, поэтому читаются
+     * без блокировки; страницы индекса и буфер копируются на момент начала.
+     */
+    @Override
+    public void postings(Collection<Integer> siteIds, PostingsConsumer consumer) throws IOException {
+        List<IndexSegment> list;
+        int[] live;
+        SortedMap<String, IndexSegment.Postings> buffered = new TreeMap<>();
+        lock.readLock().lock();
+        try {
+            list = new ArrayList<>(segments);
+            live = pageSites.clone();
+            buffer.forEach((lemma, postings) -> {
+                IndexSegment.Postings copy = new IndexSegment.Postings();
+                for (int i = 0; i < postings.size(); i++) {
+                    copy.add(postings.page(i), postings.site(i), postings.rank(i));
+                }
+                buffered.put(lemma, copy);
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // Текущая лемма каждого сегмента (null - леммы кончились) и её номер
+        int[] positions = new int[list.size()];
+        String[] heads = new String[list.size()];
+        for (int i = 0; i < list.size(); i++) {
+            heads[i] = list.get(i).lemmaCount() > 0 ? list.get(i).lemma(0) : null;
+        }
+        Iterator<Map.Entry<String, IndexSegment.Postings>> bufferedLemmas = buffered.entrySet().iterator();
+        Map.Entry<String, IndexSegment.Postings> bufferedHead = bufferedLemmas.hasNext() ? bufferedLemmas.next() : null;
+
+        while (true) {
+            String lemma = bufferedHead != null ? bufferedHead.getKey() : null;
+            for (String head : heads) {
+                if (head != null && (lemma == null || head.compareTo(lemma) < 0)) {
+                    lemma = head;
+                }
+            }
+            if (lemma == null) {
+                return;
+            }
+
+            IndexSegment.Postings postings = new IndexSegment.Postings();
+            for (int i = 0; i < heads.length; i++) {
+                if (!lemma.equals(heads[i])) {
+                    continue;
+                }
+                IndexSegment segment = list.get(i);
+                for (int posting = segment.postingStart(positions[i]); posting < segment.postingEnd(positions[i]); posting++) {
+                    int page = segment.page(posting);
+                    int site = segment.site(posting);
+                    if (page < live.length && live[page] == site && siteIds.contains(site)) {
+                        postings.add(page, site, segment.rank(posting));
+                    }
+                }
+                positions[i]++;
+                heads[i] = positions[i] < segment.lemmaCount() ? segment.lemma(positions[i]) : null;
+            }
+            if (bufferedHead != null && bufferedHead.getKey().equals(lemma)) {
+                IndexSegment.Postings pending = bufferedHead.getValue();
+                for (int i = 0; i < pending.size(); i++) {
+                    int page = pending.page(i);
+                    int site = pending.site(i);
+                    if (page < live.length && live[page] == site && siteIds.contains(site)) {
+                        postings.add(page, site, pending.rank(i));
+                    }
+                }
+                bufferedHead = bufferedLemmas.hasNext() ? bufferedLemmas.next() : null;
+            }
+            if (postings.size() > 0) {
+                consumer.accept(lemma, postings);
+            }
+        }
+    }
+
+    /**
+     * Заменяет весь индекс постингами снимка; прежние сегменты и буфер отбрасываются. Снимок читается
+     * по одной лемме и пишется сегментами не больше index.max-segment-size, так что в памяти одновременно
+     * не больше одного сегмента. Страницы снимка перечисляются в последнем сегменте.
+     */
+    public void load(IndexSnapshot.Reader snapshot) throws IOException {
+        long maxSize = settings.getMaxSegmentSize().toBytes();
+        List<IndexSegment> loaded = new ArrayList<>();
+        // Сайт страницы по id (0 - у страницы нет постингов)
+        int[] sites = new int[1024];
+        SortedMap<String, IndexSegment.Postings> chunk = new TreeMap<>();
+        long chunkSize = 0;
+        int[][] lemmas;
+        try {
+            while (snapshot.next()) {
+                IndexSegment.Postings postings = snapshot.getPostings();
+                long size = IndexSegment.lemmaSize(snapshot.getLemma(), postings.size());
+                if (!chunk.isEmpty() && chunkSize + size > maxSize) {
+                    loaded.add(writeSegment(chunk, new int[0], new int[0], new int[0]));
+                    chunk = new TreeMap<>();
+                    chunkSize = 0;
+                }
+                chunk.put(snapshot.getLemma(), postings);
+                chunkSize += size;
+                for (int i = 0; i < postings.size(); i++) {
+                    if (postings.page(i) >= sites.length) {
+                        sites = Arrays.copyOf(sites, Math.max(sites.length * 2, postings.page(i) + 1));
+                    }
+                    sites[postings.page(i)] = postings.site(i);
+                }
+            }
+
+            int[] pagesWithPostings = sites;
+            int[] pageIds = IntStream.range(0, sites.length).filter(pageId -> pagesWithPostings[pageId] != 0).toArray();
+            int[] pageSiteIds = new int[pageIds.length];
+            for (int i = 0; i < pageIds.length; i++) {
+                pageSiteIds[i] = sites[pageIds[i]];
+            }
+            if (!chunk.isEmpty() && chunkSize + 2L * pageIds.length * Integer.BYTES > maxSize) {
+                loaded.add(writeSegment(chunk, new int[0], new int[0], new int[0]));
+                chunk = new TreeMap<>();
+            }
+            loaded.add(writeSegment(chunk, pageIds, pageSiteIds, new int[0]));
+            lemmas = readPageLemmas(loaded, sites);
+        } catch (IOException | RuntimeException e) {
+            loaded.forEach(segment -> deleteQuietly(segment.getFile()));
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            writeManifest(loaded);
+            List<IndexSegment> replaced = segments;
+            segments = new ArrayList<>(loaded);
+            replaced.forEach(segment -> deleteQuietly(segment.getFile()));
+
+            buffer.clear();
+            bufferedPages.clear();
+            bufferedPageSites.clear();
+            bufferedDeletes.clear();
+            bufferedPostings = 0;
+            pageSites = new int[1024];
+            sitePages.clear();
+            pageLemmas = new int[1024][];
+            siteLemmaPages.clear();
+            siteLemmaCounts.clear();
+            for (int pageId = 0; pageId < sites.length; pageId++) {
+                if (sites[pageId] != 0) {
+                    markPage(pageId, sites[pageId]);
+                }
+            }
+            countLemmas(lemmas);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private interface PostingConsumer {
+        void accept(int page, int site, float rank);
+    }
+
+    // Постинги леммы страниц, которые сейчас в индексе, из всех сегментов и буфера
+    private void readPostings(String lemma, PostingConsumer consumer) {
+        lock.readLock().lock();
+        try {
+            for (IndexSegment segment : segments) {
+                int index = segment.find(lemma);
+                if (index < 0) {
+                    continue;
+                }
+                for (int posting = segment.postingStart(index); posting < segment.postingEnd(index); posting++) {
+                    int page = segment.page(posting);
+                    int site = segment.site(posting);
+                    if (isLive(page, site)) {
+                        consumer.accept(page, site, segment.rank(posting));
+                    }
+                }
+            }
+            IndexSegment.Postings postings = buffer.get(lemma);
+            if (postings != null) {
+                for (int i = 0; i < postings.size(); i++) {
+                    if (isLive(postings.page(i), postings.site(i))) {
+                        consumer.accept(postings.page(i), postings.site(i), postings.rank(i));
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Номера лемм каждой страницы индекса live по постингам сегментов - при запуске и загрузке снимка,
+     * дальше они ведутся при записи. Два прохода: сначала число лемм страниц, затем сами номера.
+     */
+    private static int[][] readPageLemmas(List<IndexSegment> list, int[] live) {
+        int[] sizes = new int[live.length];
+        for (IndexSegment segment : list) {
+            for (int posting = 0; posting < segment.postingCount(); posting++) {
+                int page = segment.page(posting);
+                if (page < live.length && live[page] == segment.site(posting)) {
+                    sizes[page]++;
+                }
+            }
+        }
+        int[][] lemmas = new int[live.length][];
+        for (int page = 0; page < live.length; page++) {
+            if (live[page] != 0) {
+                lemmas[page] = new int[sizes[page]];
+                sizes[page] = 0;
+            }
+        }
+        for (IndexSegment segment : list) {
+            for (int index = 0; index < segment.lemmaCount(); index++) {
+                int lemmaId = LemmaIds.id(segment.lemma(index));
+                for (int posting = segment.postingStart(index); posting < segment.postingEnd(index); posting++) {
+                    int page = segment.page(posting);
+                    if (page < live.length && live[page] == segment.site(posting)) {
+                        lemmas[page][sizes[page]++] = lemmaId;
+                    }
+                }
+            }
+        }
+        return lemmas;
+    }
+
+    private void countLemmas(int[][] lemmas) {
+        for (int pageId = 0; pageId < lemmas.length; pageId++) {
+            if (lemmas[pageId] != null) {
+                countLemmas(pageId, pageSites[pageId], lemmas[pageId]);
+            }
+        }
+    }
+
+    private void countLemmas(int pageId, int siteId, int[] lemmaIds) {
+        if (pageId >= pageLemmas.length) {
+            pageLemmas = Arrays.copyOf(pageLemmas, Math.max(pageLemmas.length * 2, pageId + 1));
+        }
+        pageLemmas[pageId] = lemmaIds;
+        int[] pages = siteLemmaPages.getOrDefault(siteId, new int[0]);
+        int maxId = Arrays.stream(lemmaIds).max().orElse(-1);
+        if (maxId >= pages.length) {
+            pages = Arrays.copyOf(pages, Math.max(pages.length * 2, maxId + 1));
+        }
+        siteLemmaPages.put(siteId, pages);
+        long added = 0;
+        for (int lemmaId : lemmaIds) {
+            if (pages[lemmaId]++ == 0) {
+                added++;
+            }
+        }
+        if (added > 0) {
+            siteLemmaCounts.merge(siteId, added, Long::sum);
+        }
+    }
+
+    private void uncountLemmas(int pageId, int siteId) {
+        if (pageId >= pageLemmas.length || pageLemmas[pageId] == null) {
+            return;
+        }
+        int[] pages = siteLemmaPages.get(siteId);
+        long removed = 0;
+        for (int lemmaId : pageLemmas[pageId]) {
+            if (--pages[lemmaId] == 0) {
+                removed++;
+            }
+        }
+        pageLemmas[pageId] = null;
+        long left = removed;
+        siteLemmaCounts.computeIfPresent(siteId, (site, count) -> count > left ? count - left : null);
+    }
+
+    private boolean isLive(int page, int site) {
+        return page < pageSites.length && pageSites[page] == site;
+    }
+
+    private void markPage(int pageId, int siteId) {
+        if (pageId >= pageSites.length) {
+            pageSites = Arrays.copyOf(pageSites, Math.max(pageSites.length * 2, pageId + 1));
+        }
+        if (pageSites[pageId] == 0) {
+            sitePages.merge(siteId, 1L, Long::sum);
+        }
+        pageSites[pageId] = siteId;
+    }
+
+    private boolean unmarkPage(int pageId) {
+        if (pageId >= pageSites.length || pageSites[pageId] == 0) {
+            return false;
+        }
+        sitePages.computeIfPresent(pageSites[pageId], (site, count) -> count > 1 ? count - 1 : null);
+        uncountLemmas(pageId, pageSites[pageId]);
+        pageSites[pageId] = 0;
+        return true;
+    }
+
+    private void flushAndMerge() {
+        lock.writeLock().lock();
+        try {
+            flush();
+        } catch (IOException e) {
+            LOG.error("Не удалось записать сегмент индекса", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        merge();
+    }
+
+    // Буфер становится новым сегментом; вызывается под блокировкой записи
+    private void flush() throws IOException {
+        if (bufferedPages.isEmpty() && bufferedDeletes.isEmpty()) {
+            return;
+        }
+        // Страницы, удалённые, пока они были в буфере, в сегмент не попадают вовсе
+        SortedMap<String, IndexSegment.Postings> live = new TreeMap<>();
+        buffer.forEach((lemma, postings) -> {
+            IndexSegment.Postings copy = new IndexSegment.Postings();
+            for (int i = 0; i < postings.size(); i++) {
+                if (isLive(postings.page(i), postings.site(i))) {
+                    copy.add(postings.page(i), postings.site(i), postings.rank(i));
+                }
+            }
+            if (copy.size() > 0) {
+                live.put(lemma, copy);
+            }
+        });
+        Set<Integer> added = new HashSet<>(bufferedPages);
+        List<Integer> pages = new ArrayList<>();
+        List<Integer> sites = new ArrayList<>();
+        for (int i = 0; i < bufferedPages.size(); i++) {
+            if (isLive(bufferedPages.get(i), bufferedPageSites.get(i))) {
+                pages.add(bufferedPages.get(i));
+                sites.add(bufferedPageSites.get(i));
+            }
+        }
+        int[] deletes = bufferedDeletes.stream().filter(pageId -> !added.contains(pageId))
+                .mapToInt(Integer::intValue).toArray();
+
+        List<IndexSegment> updated = new ArrayList<>(segments);
+        updated.add(writeSegment(live, toArray(pages), toArray(sites), deletes));
+        writeManifest(updated);
+        segments = updated;
+
+        buffer.clear();
+        bufferedPages.clear();
+        bufferedPageSites.clear();
+        bufferedDeletes.clear();
+        bufferedPostings = 0;
+    }
+
+    /**
+     * Сливает самые маленькие сегменты, когда их набирается index.merge-factor. Постинги удалённых страниц
+     * при этом выбрасываются. Новый сегмент пишется без блокировки, поиск идёт по старым, пока они не заменены.
+     */
+    private void merge() {
+        List<IndexSegment> merged;
+        int[] live;
+        lock.readLock().lock();
+        try {
+            if (segments.size() < settings.getMergeFactor()) {
+                return;
+            }
+            merged = new ArrayList<>();
+            long size = 0;
+            for (IndexSegment segment : segments.stream().sorted(Comparator.comparingLong(IndexSegment::size)).toList()) {
+                if (merged.size() == settings.getMergeFactor()
+                        || size + segment.size() > settings.getMaxSegmentSize().toBytes()) {
+                    break;
+                }
+                merged.add(segment);
+                size += segment.size();
+            }
+            // Снимок страниц индекса; удалённые после него выбросит следующее слияние
+            live = pageSites.clone();
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (merged.size() < 2) {
+            return;
+        }
+
+        try {
+            SortedMap<String, IndexSegment.Postings> postings = new TreeMap<>();
+            List<Integer> pages = new ArrayList<>();
+            List<Integer> sites = new ArrayList<>();
+            Set<Integer> added = new HashSet<>();
+            for (IndexSegment segment : merged) {
+                for (int index = 0; index < segment.lemmaCount(); index++) {
+                    IndexSegment.Postings target = null;
+                    for (int posting = segment.postingStart(index); posting < segment.postingEnd(index); posting++) {
+                        int page = segment.page(posting);
+                        if (page < live.length && live[page] == segment.site(posting)) {
+                            if (target == null) {
+                                target = postings.computeIfAbsent(segment.lemma(index), lemma -> new IndexSegment.Postings());
+                            }
+                            target.add(page, segment.site(posting), segment.rank(posting));
+                        }
+                    }
+                }
+                for (int i = 0; i < segment.pageCount(); i++) {
+                    added.add(segment.pageId(i));
+                    if (segment.pageId(i) < live.length && live[segment.pageId(i)] == segment.pageSite(i)) {
+                        pages.add(segment.pageId(i));
+                        sites.add(segment.pageSite(i));
+                    }
+                }
+            }
+            // Удаления страниц из сливаемых сегментов больше не нужны, остальные переносятся
+            Set<Integer> deletes = new TreeSet<>();
+            for (IndexSegment segment : merged) {
+                for (int i = 0; i < segment.deleteCount(); i++) {
+                    if (!added.contains(segment.deleted(i))) {
+                        deletes.add(segment.deleted(i));
+                    }
+                }
+            }
+            IndexSegment result = writeSegment(postings, toArray(pages), toArray(sites), toArray(new ArrayList<>(deletes)));
+
+            lock.writeLock().lock();
+            try {
+                // Пока шло слияние, индекс могли целиком заменить снимком
+                if (!segments.containsAll(merged)) {
+                    deleteQuietly(result.getFile());
+                    return;
+                }
+                List<IndexSegment> updated = new ArrayList<>(segments);
+                updated.removeAll(merged);
+                updated.add(result);
+                writeManifest(updated);
+                segments = updated;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            merged.forEach(segment -> deleteQuietly(segment.getFile()));
+        } catch (IOException e) {
+            LOG.error("Не удалось слить сегменты индекса", e);
+        }
+    }
+
+    private IndexSegment writeSegment(SortedMap<String, IndexSegment.Postings> postings,
+                                      int[] pages, int[] sites, int[] deletes) throws IOException {
+        Path file;
+        synchronized (this) {
+            file = directory.resolve(String.format("%010d%s", nextSegment++, SEGMENT_SUFFIX));
+        }
+        IndexSegment.write(file, postings, pages, sites, deletes);
+        return IndexSegment.open(file);
+    }
+
+    private void writeManifest(List<IndexSegment> list) throws IOException {
+        Path temp = directory.resolve(MANIFEST + ".tmp");
+        Files.write(temp, list.stream().map(segment -> segment.getFile().getFileName().toString()).toList(),
+                StandardCharsets.UTF_8);
+        Files.move(temp, directory.resolve(MANIFEST),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOG.warn("Не удалось удалить файл индекса {}", file, e);
+        }
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        return values.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,173 @@
+package searchengine.services.impl;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.IndexSettings;
+import searchengine.dto.snapshot.SnapshotResponse;
+import searchengine.model.PageHeader;
+import searchengine.model.Site;
+import searchengine.repository.PageRepository;
+import searchengine.repository.SiteRepository;
+import searchengine.services.IndexBackend;
+import searchengine.services.SnapshotService;
+import searchengine.utils.IndexSegment;
+import searchengine.utils.IndexSnapshot;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * Снимки индекса для быстрого запуска новых реплик. Реплика поднимается на копии БД, с которой снят снимок,
+ * и вместо переиндексации загружает постинги из файла ещё до того, как начнёт принимать запросы.
+ */
+@RequiredArgsConstructor
+@Service
+public class SnapshotServiceImpl implements SnapshotService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SnapshotServiceImpl.class);
+
+    private static final DateTimeFormatter FILE_NAME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final SiteRepository siteRepository;
+    private final PageRepository pageRepository;
+    private final IndexBackend indexBackend;
+    private final IndexSettings settings;
+    private final TransactionTemplate transactionTemplate;
+    // Импорт пишет сегменты напрямую, поэтому доступен только со встроенным индексом
+    private final ObjectProvider<SegmentIndexBackend> segmentIndexBackend;
+
+    @Override
+    public SnapshotResponse exportSnapshot() {
+        long start = System.currentTimeMillis();
+        Path file = Path.of(settings.getSnapshotDir(), LocalDateTime.now().format(FILE_NAME) + ".snapshot");
+        try {
+            SnapshotResponse response = transactionTemplate.execute(status -> {
+                try {
+                    return write(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            response.setBytes(Files.size(file));
+            response.setMillis(System.currentTimeMillis() - start);
+            return response;
+        } catch (IOException | RuntimeException e) {
+            Throwable cause = e instanceof UncheckedIOException ? e.getCause() : e;
+            SnapshotResponse response = new SnapshotResponse();
+            response.setResult(false);
+            response.setError("Не удалось записать снимок индекса: " + cause.getMessage());
+            return response;
+        }
+    }
+
+    // Только видимые поколения сайтов: строящиеся и ждущие удаления реплике не нужны.
+    // Постинги пишутся в файл по одной лемме, не собираясь в памяти
+    private SnapshotResponse write(Path file) throws IOException {
+        List<Site> sites = siteRepository.findAllByHiddenFalse();
+        Set<Integer> siteIds = new HashSet<>();
+        List<IndexSnapshot.SiteEntry> siteEntries = new ArrayList<>();
+        for (Site site : sites) {
+            siteIds.add(site.getId());
+            siteEntries.add(new IndexSnapshot.SiteEntry(site.getId(), site.getUrl(), site.getName(),
+                    Objects.toString(site.getStatus(), ""), Objects.toString(site.getStatusTime(), ""),
+                    site.getLastError()));
+        }
+
+        // Страницы пишутся раньше постингов: постинги страниц, добавленных после чтения страниц, выбрасываются
+        List<IndexSnapshot.PageEntry> pages = new ArrayList<>();
+        BitSet pageIds = new BitSet();
+        for (PageHeader page : pageRepository.findAllHeaders()) {
+            if (siteIds.contains(page.getSiteId())) {
+                pages.add(new IndexSnapshot.PageEntry(page.getId(), page.getSiteId(), page.getPath(), page.getCode()));
+                pageIds.set(page.getId());
+            }
+        }
+        pages.sort(Comparator.comparingInt(IndexSnapshot.PageEntry::getId));
+
+        try (IndexSnapshot.Writer writer = IndexSnapshot.create(file, System.currentTimeMillis(), siteEntries, pages)) {
+            indexBackend.postings(siteIds, (lemma, list) -> {
+                IndexSegment.Postings kept = new IndexSegment.Postings();
+                for (int i = 0; i < list.size(); i++) {
+                    if (pageIds.get(list.page(i))) {
+                        kept.add(list.page(i), list.site(i), list.rank(i));
+                    }
+                }
+                if (kept.size() > 0) {
+                    writer.add(lemma, kept);
+                }
+            });
+            writer.commit();
+
+            SnapshotResponse response = new SnapshotResponse();
+            response.setResult(true);
+            response.setFile(file.toString());
+            response.setSites(siteEntries.size());
+            response.setPages(pages.size());
+            response.setLemmas(writer.getLemmaCount());
+            response.setPostings(writer.getPostingCount());
+            return response;
+        }
+    }
+
+    /**
+     * Загружает index.import-snapshot в индекс при запуске. Снимок должен быть снят с той же БД:
+     * сайты и страницы сверяются по id, и при расхождении приложение не запускается,
+     * чтобы не отдавать в поиске чужие страницы.
+     */
+    @PostConstruct
+    void importSnapshot() throws IOException {
+        String source = settings.getImportSnapshot();
+        if (source == null || source.isBlank()) {
+            return;
+        }
+        SegmentIndexBackend segments = segmentIndexBackend.getIfAvailable();
+        if (segments == null) {
+            // Таблицы индекса в БД копируются вместе с ней, отдельный импорт им не нужен
+            throw new IllegalStateException("Импорт снимка индекса поддерживается только для index.backend=segments");
+        }
+        long start = System.currentTimeMillis();
+        try (IndexSnapshot.Reader snapshot = IndexSnapshot.open(Path.of(source))) {
+            verify(snapshot);
+            long verified = System.currentTimeMillis() - start;
+            segments.load(snapshot);
+            LOG.info("Снимок индекса {} загружен: сайтов {}, страниц {}, лемм {}; сверка с БД {} мс, всего {} мс",
+                    source, snapshot.getSites().size(), snapshot.getPages().size(), snapshot.getLemmaCount(),
+                    verified, System.currentTimeMillis() - start);
+        }
+    }
+
+    private void verify(IndexSnapshot.Reader snapshot) {
+        Map<Integer, Site> sites = new HashMap<>();
+        siteRepository.findAll().forEach(site -> sites.put(site.getId(), site));
+        for (IndexSnapshot.SiteEntry entry : snapshot.getSites()) {
+            Site site = sites.get(entry.getId());
+            if (site == null || site.isHidden() || !site.getUrl().equals(entry.getUrl())) {
+                throw mismatch("сайт " + entry.getId() + " " + entry.getUrl());
+            }
+        }
+
+        Map<Integer, PageHeader> pages = new HashMap<>();
+        pageRepository.findAllHeaders().forEach(page -> pages.put(page.getId(), page));
+        for (IndexSnapshot.PageEntry entry : snapshot.getPages()) {
+            PageHeader page = pages.get(entry.getId());
+            if (page == null || page.getSiteId() != entry.getSiteId() || !page.getPath().equals(entry.getPath())) {
+                throw mismatch("страница " + entry.getId() + " " + entry.getPath());
+            }
+        }
+    }
+
+    private IllegalStateException mismatch(String what) {
+        return new IllegalStateException("Снимок не соответствует базе данных: " + what
+                + " отсутствует или отличается. Снимок нужно снимать с той копии БД, на которой запускается реплика");
+    }
+}
@@ -6,20 +6,20 @@ import searchengine.dto.statistics.DetailedStatisticsItem;
 import searchengine.dto.statistics.StatisticsData;
 import searchengine.dto.statistics.StatisticsResponse;
 import searchengine.dto.statistics.TotalStatistics;
-import searchengine.model.Lemma;
-import searchengine.model.Page;
 import searchengine.model.Site;
-import searchengine.repository.LemmaRepository;
+import searchengine.model.SiteCount;
 import searchengine.repository.PageRepository;
 import searchengine.repository.SiteRepository;
+import searchengine.services.IndexBackend;
 import searchengine.services.StatisticsService;
 
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @RequiredArgsConstructor
 @Service
@@ -27,10 +27,17 @@ public class StatisticServiceImpl implements StatisticsService {
 
     private final SiteRepository siteRepository;
     private final PageRepository pageRepository;
-    private final LemmaRepository lemmaRepository;
+    private final IndexBackend indexBackend;
 
     public static final int OFFSET_HOURS;
 
+    // Во время индексации дашборд опрашивает статистику постоянно,
+    // поэтому ответ переиспользуется в течение этого времени
+    private static final long CACHE_TTL_MILLIS = 2000;
+
+    private volatile StatisticsResponse cachedResponse;
+    private volatile long cachedAt;
+
     static {
         ZonedDateTime zonedDateTime = ZonedDateTime.now();
         ZoneOffset zoneOffset = zonedDateTime.getOffset();
@@ -39,51 +46,42 @@ public class StatisticServiceImpl implements StatisticsService {
 
     @Override
     public StatisticsResponse getStatistics() {
+        StatisticsResponse cached = cachedResponse;
+        if (cached != null && System.currentTimeMillis() - cachedAt < CACHE_TTL_MILLIS) {
+            return cached;
+        }
+        StatisticsResponse statisticsResponse = loadStatistics();
+        cachedResponse = statisticsResponse;
+        cachedAt = System.currentTimeMillis();
+        return statisticsResponse;
+    }
+
+    private StatisticsResponse loadStatistics() {
 
         StatisticsData statisticsData = new StatisticsData();
         TotalStatistics totalStatistics = new TotalStatistics();
         List<DetailedStatisticsItem> detailedStatisticsItems = new ArrayList<>();
         StatisticsResponse statisticsResponse = new StatisticsResponse();
 
-        List<Site> sites = new ArrayList<>();
-        siteRepository.findAll().forEach(sites::add);
+        // Поколения, которые строятся или ждут удаления, в статистику не попадают
+        List<Site> sites = siteRepository.findAllByHiddenFalse();
         if (sites.isEmpty()) {
             statisticsResponse.setResult(false);
             return statisticsResponse;
         }
 
-        List<Page> pages = new ArrayList<>();
-        pageRepository.findAll().forEach(pages::add);
-        List<Lemma> lemmas = new ArrayList<>();
-        lemmaRepository.findAll().forEach(lemmas::add);
+        // Количество страниц считает БД, лемм - индекс, по одному значению на сайт.
+        // Счётчики есть и у скрытых поколений, в итог они не входят
+        Map<Integer, Long> pageCountsBySiteId = toMap(pageRepository.countBySite());
+        Map<Integer, Long> lemmaCountsBySiteId = indexBackend.lemmaCounts();
+        Set<Integer> siteIds = sites.stream().map(Site::getId).collect(Collectors.toSet());
 
         totalStatistics.setSites(sites.size());
-        totalStatistics.setPages(pages.size());
-        totalStatistics.setLemmas(lemmas.size());
-        totalStatistics.setIndexing(true);
+        totalStatistics.setPages(sum(pageCountsBySiteId, siteIds));
+        totalStatistics.setLemmas(sum(lemmaCountsBySiteId, siteIds));
+        totalStatistics.setIndexing(IndexingServiceImpl.isIndexing());
         statisticsData.setTotal(totalStatistics);
 
-        Map<Integer, Integer> pageCountsBySiteId = new HashMap<>();
-        Map<Integer, Integer> lemmaCountsBySiteId = new HashMap<>();
-
-        for (Page page : pages) {
-            int siteId = page.getSite().getId();
-            if (pageCountsBySiteId.containsKey(siteId)) {
-                pageCountsBySiteId.put(siteId, pageCountsBySiteId.get(siteId) + 1);
-            } else {
-                pageCountsBySiteId.put(siteId, 1);
-            }
-        }
-
-        for (Lemma lemma : lemmas) {
-            int siteId = lemma.getSite().getId();
-            if (lemmaCountsBySiteId.containsKey(siteId)) {
-                lemmaCountsBySiteId.put(siteId, lemmaCountsBySiteId.get(siteId) + 1);
-            } else {
-                lemmaCountsBySiteId.put(siteId, 1);
-            }
-        }
-
         for (Site site : sites) {
             DetailedStatisticsItem detailedStatisticsItem = new DetailedStatisticsItem();
             detailedStatisticsItem.setName(site.getName());
@@ -93,17 +91,8 @@ public class StatisticServiceImpl implements StatisticsService {
             detailedStatisticsItem.setError(site.getLastError());
 
             int siteId = site.getId();
-            Integer pageCount = pageCountsBySiteId.get(siteId);
-            if (pageCount == null) {
-                pageCount = 0;
-            }
-            detailedStatisticsItem.setPages(pageCount);
-
-            Integer lemmaCount = lemmaCountsBySiteId.get(siteId);
-            if (lemmaCount == null) {
-                lemmaCount = 0;
-            }
-            detailedStatisticsItem.setLemmas(lemmaCount);
+            detailedStatisticsItem.setPages(pageCountsBySiteId.getOrDefault(siteId, 0L).intValue());
+            detailedStatisticsItem.setLemmas(lemmaCountsBySiteId.getOrDefault(siteId, 0L).intValue());
 
             detailedStatisticsItems.add(detailedStatisticsItem);
         }
@@ -114,4 +103,12 @@ public class StatisticServiceImpl implements StatisticsService {
 
         return statisticsResponse;
     }
-}
\ No newline at end of file
+
+    private Map<Integer, Long> toMap(List<SiteCount> counts) {
+        return counts.stream().collect(Collectors.toMap(SiteCount::getSiteId, SiteCount::getCount));
+    }
+
+    private int sum(Map<Integer, Long> counts, Set<Integer> siteIds) {
+        return (int) siteIds.stream().mapToLong(siteId -> counts.getOrDefault(siteId, 0L)).sum();
+    }
+}
@@ -0,0 +1,13 @@
+package searchengine.utils;
+
+import java.io.IOException;
+
+/**
+ * Тело ответа больше допустимого для сайта размера: загрузка прервана, страница пропускается.
+ */
+public class BodyTooLargeException extends IOException {
+
+    public BodyTooLargeException(String url, long limit) {
+        super("Ответ больше " + limit + " байт: " + url);
+    }
+}
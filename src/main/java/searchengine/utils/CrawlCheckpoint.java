@@ -0,0 +1,105 @@
+package searchengine.utils;
+
+import lombok.Getter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Снимок обхода сайта: все поставленные в обход адреса и те из них, что ещё не записаны в БД.
+ * После перезапуска обход продолжается с незаписанных адресов, уже пройденные повторно не загружаются.
+ * <p>
+ * Файл (gzip, big-endian): magic, version, адрес сайта, число и список пройденных адресов,
+ * число и список адресов фронта обхода. Пишется во временный файл и переименовывается,
+ * поэтому при падении во время записи остаётся предыдущий снимок.
+ */
+@Getter
+public final class CrawlCheckpoint {
+
+    private static final int MAGIC = 0x43434B50; // "CCKP"
+    private static final int VERSION = 1;
+
+    private final String siteUrl;
+    private final Set<String> visited;
+    private final List<String> frontier;
+
+    public CrawlCheckpoint(String siteUrl, Collection<String> visited, Collection<String> frontier) {
+        this.siteUrl = siteUrl;
+        this.visited = new HashSet<>(visited);
+        this.frontier = new ArrayList<>(frontier);
+    }
+
+    // Файл снимка сайта в каталоге контрольных точек
+    public static Path file(Path directory, String siteUrl) {
+        return directory.resolve(TextUtils.contentHash(siteUrl).substring(0, 32) + ".checkpoint");
+    }
+
+    public void write(Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream stream = Files.newOutputStream(temporary);
+             DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(new GZIPOutputStream(stream)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(siteUrl);
+            writeLinks(out, visited);
+            writeLinks(out, frontier);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Снимок сайта или пустой результат, если снимка нет или он сделан для другого адреса.
+     */
+    public static Optional<CrawlCheckpoint> read(Path file, String siteUrl) throws IOException {
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        try (InputStream stream = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(
+                     new BufferedInputStream(new GZIPInputStream(stream)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Неизвестный формат контрольной точки обхода");
+            }
+            if (!in.readUTF().equals(siteUrl)) {
+                return Optional.empty();
+            }
+            List<String> visited = readLinks(in);
+            List<String> frontier = readLinks(in);
+            return Optional.of(new CrawlCheckpoint(siteUrl, visited, frontier));
+        }
+    }
+
+    private static void writeLinks(DataOutputStream out, Collection<String> links) throws IOException {
+        out.writeInt(links.size());
+        for (String link : links) {
+            out.writeUTF(link);
+        }
+    }
+
+    private static List<String> readLinks(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<String> links = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            links.add(in.readUTF());
+        }
+        return links;
+    }
+}
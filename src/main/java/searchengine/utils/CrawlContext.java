@@ -0,0 +1,133 @@
+package searchengine.utils;
+
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Общее состояние обхода одного сайта для всех задач {@link Indexing}.
+ */
+@Getter
+@Builder
+public class CrawlContext {
+
+    private final String siteUrl;
+
+    // Загруженные страницы, ожидающие лемматизации и записи в БД
+    private final BlockingQueue<CrawledPage> pages;
+
+    private final SiteProgress progress;
+
+    // Пауза перед загрузкой каждой страницы, мс
+    private final long delayMillis;
+
+    // Предел тела ответа для страниц сайта, байт; 0 - предел загрузчика по умолчанию
+    private final long maxBodySize;
+
+    // Адреса, уже поставленные в обход
+    @Builder.Default
+    private final Set<String> links = ConcurrentHashMap.newKeySet();
+
+    // Фронт обхода: поставленные в обход адреса, страницы которых ещё не записаны в БД
+    @Builder.Default
+    private final Set<String> frontier = ConcurrentHashMap.newKeySet();
+
+    // Адреса, не загруженные из-за сетевых ошибок; повторяются в конце обхода
+    @Builder.Default
+    private final Set<String> failed = ConcurrentHashMap.newKeySet();
+
+    // Фронт из контрольной точки: корневая задача продолжает обход с него, а не с главной страницы
+    @Builder.Default
+    private final List<String> resumeFrontier = List.of();
+
+    // Страницы из карты сайта с датой изменения (null, если дата не указана)
+    @Builder.Default
+    private final Map<String, LocalDateTime> sitemap = Map.of();
+
+    // Переиндексация: страница адреса в видимом поколении сайта (null - её там нет)
+    @Builder.Default
+    private final Function<String, PreviousPage> previous = url -> null;
+
+    // и её копия, восстановленная из сохранённого HTML (null - восстановить нельзя, нужно загружать)
+    @Builder.Default
+    private final Function<String, CrawledPage> restore = url -> null;
+
+    // Постановка и завершение адресов идут параллельно, снимок берёт их все разом
+    @Getter(AccessLevel.NONE)
+    @Builder.Default
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Страница из карты сайта не менялась с тех пор, как проиндексирована в видимом поколении
+    public boolean isUnchanged(String url, PreviousPage page) {
+        return page != null && page.isIndexedSince(sitemap.get(url));
+    }
+
+    /**
+     * Ставит адрес в обход; false, если он уже был поставлен.
+     */
+    public boolean schedule(String link) {
+        lock.readLock().lock();
+        try {
+            if (!links.add(link)) {
+                return false;
+            }
+            frontier.add(link);
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Адрес из контрольной точки или повторного прохода снова в обходе (в links он уже есть);
+    // false, если он и так во фронте - ждёт повтора после сетевой ошибки
+    public boolean reschedule(String link) {
+        lock.readLock().lock();
+        try {
+            return frontier.add(link);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Страница записана в БД или пропущена
+    public void complete(String link) {
+        lock.readLock().lock();
+        try {
+            frontier.remove(link);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Загрузка не удалась: адрес остаётся во фронте и ждёт повторного прохода
+    public void fail(String link) {
+        failed.add(link);
+    }
+
+    // Забирает адреса для повторного прохода
+    public List<String> drainFailed() {
+        List<String> drained = new ArrayList<>(failed);
+        failed.removeAll(drained);
+        return drained;
+    }
+
+    public CrawlCheckpoint checkpoint() {
+        lock.writeLock().lock();
+        try {
+            return new CrawlCheckpoint(siteUrl, links, frontier);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
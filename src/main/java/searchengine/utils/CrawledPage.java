@@ -0,0 +1,32 @@
+package searchengine.utils;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class CrawledPage {
+
+    private String url;
+
+    private int code;
+
+    private String content;
+
+    private String text;
+
+    // Абсолютные адреса ссылок страницы, извлекаются при том же разборе HTML
+    @Builder.Default
+    private List<String> links = List.of();
+
+    private String etag;
+
+    private String lastModified;
+
+    private String contentHash;
+
+    // Леммы текста; считаются потоками обхода до очереди, чтобы запись в БД их не ждала
+    private LemmaCounts lemmas;
+}
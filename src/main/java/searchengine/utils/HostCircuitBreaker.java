@@ -0,0 +1,74 @@
+package searchengine.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Предохранитель по хостам: после failureThreshold неудачных запросов подряд хост закрывается
+ * на openMillis, и запросы к нему сразу завершаются {@link HostUnavailableException}, не занимая
+ * потоки обхода ожиданием таймаутов. По истечении паузы проходит один пробный запрос:
+ * удача открывает хост, неудача закрывает его на следующую паузу.
+ */
+public class HostCircuitBreaker {
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private final Map<String, HostState> hosts = new ConcurrentHashMap<>();
+
+    public HostCircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * Разрешение на запрос к хосту; если хост на паузе, бросает {@link HostUnavailableException}.
+     */
+    public void acquire(String host, String url) throws HostUnavailableException {
+        HostState state = hosts.computeIfAbsent(host, key -> new HostState());
+        synchronized (state) {
+            long now = System.currentTimeMillis();
+            if (now < state.openUntil) {
+                throw new HostUnavailableException(url, state.openUntil - now);
+            }
+            if (state.failures >= failureThreshold) {
+                // Пробный запрос: остальные ждут его результата ещё одну паузу
+                state.openUntil = now + openMillis;
+            }
+        }
+    }
+
+    public void onSuccess(String host) {
+        HostState state = hosts.get(host);
+        if (state == null) return;
+        synchronized (state) {
+            state.failures = 0;
+            state.openUntil = 0;
+        }
+    }
+
+    public void onFailure(String host) {
+        HostState state = hosts.computeIfAbsent(host, key -> new HostState());
+        synchronized (state) {
+            state.failures++;
+            if (state.failures >= failureThreshold) {
+                state.openUntil = System.currentTimeMillis() + openMillis;
+            }
+        }
+    }
+
+    /**
+     * Сколько миллисекунд хост ещё на паузе (0, если запросы к нему разрешены).
+     */
+    public long pausedFor(String host) {
+        HostState state = hosts.get(host);
+        if (state == null) return 0;
+        synchronized (state) {
+            return Math.max(0, state.openUntil - System.currentTimeMillis());
+        }
+    }
+
+    private static final class HostState {
+        private int failures;
+        private long openUntil;
+    }
+}
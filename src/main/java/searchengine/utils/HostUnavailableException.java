@@ -0,0 +1,13 @@
+package searchengine.utils;
+
+import java.io.IOException;
+
+/**
+ * Хост на паузе после череды неудачных запросов: запрос не отправлялся.
+ */
+public class HostUnavailableException extends IOException {
+
+    public HostUnavailableException(String url, long pausedMillis) {
+        super("Хост временно недоступен (ещё " + pausedMillis + " мс): " + url);
+    }
+}
@@ -0,0 +1,79 @@
+package searchengine.utils;
+
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Задание на переиндексацию отдельных страниц, принятое через /api/indexPage.
+ * Адреса задания обрабатываются фоновыми потоками по одному; здесь - их общий ход.
+ */
+public class IndexJob {
+
+    public enum Status {QUEUED, RUNNING, FINISHED}
+
+    @Getter
+    private final long id;
+    @Getter
+    private final int priority;
+    @Getter
+    private final List<String> urls;
+    @Getter
+    private final long createdAt = System.currentTimeMillis();
+
+    private final AtomicInteger started = new AtomicInteger();
+    private final AtomicInteger done = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    // Адрес -> текст ошибки
+    @Getter
+    private final Map<String, String> errors = new ConcurrentHashMap<>();
+
+    private volatile long finishedAt;
+
+    public IndexJob(long id, int priority, List<String> urls) {
+        this.id = id;
+        this.priority = priority;
+        this.urls = List.copyOf(urls);
+    }
+
+    public void onStarted() {
+        started.incrementAndGet();
+    }
+
+    public void onDone() {
+        done.incrementAndGet();
+        finishIfComplete();
+    }
+
+    public void onFailed(String url, String error) {
+        failed.incrementAndGet();
+        errors.put(url, error);
+        finishIfComplete();
+    }
+
+    private void finishIfComplete() {
+        if (done.get() + failed.get() == urls.size()) {
+            finishedAt = System.currentTimeMillis();
+        }
+    }
+
+    public Status getStatus() {
+        if (finishedAt != 0) return Status.FINISHED;
+        return started.get() == 0 ? Status.QUEUED : Status.RUNNING;
+    }
+
+    public int getDone() {
+        return done.get();
+    }
+
+    public int getFailed() {
+        return failed.get();
+    }
+
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+}
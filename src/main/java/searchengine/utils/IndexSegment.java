@@ -0,0 +1,340 @@
+package searchengine.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.SortedMap;
+
+/**
+ * Неизменяемый сегмент встроенного индекса в файле, отображённом в память.
+ * <p>
+ * Для каждой леммы сегмент хранит постинги - страницу, её сайт и ранг леммы на странице - по возрастанию номера
+ * страницы. Кроме того, в нём перечислены страницы, добавленные в индекс вместе с сегментом, и страницы,
+ * удалённые из индекса после записи предыдущих сегментов. Леммы отсортированы, поиск - двоичный
+ * со сравнением прямо с символами в файле, как в {@link LemmaDictionary}.
+ * <p>
+ * Формат (big-endian): magic, version, lemmaCount, postingCount, pageCount, deleteCount, charCount;
+ * int lemmaStart[lemmaCount + 1] - начало леммы в массиве символов;
+ * int postingStart[lemmaCount + 1] - начало постингов леммы;
+ * int postingPage[postingCount]; int postingSite[postingCount]; float postingRank[postingCount];
+ * int pageId[pageCount]; int pageSite[pageCount]; int deleted[deleteCount]; char chars[charCount].
+ */
+public final class IndexSegment {
+
+    private static final int MAGIC = 0x49534547; // "ISEG"
+    private static final int VERSION = 1;
+    private static final int HEADER_INTS = 7;
+
+    private final Path file;
+    private final long size;
+    private final int lemmaCount;
+    private final int postingCount;
+    private final int pageCount;
+    private final int deleteCount;
+    private final IntBuffer lemmaStart;
+    private final IntBuffer postingStart;
+    private final IntBuffer postingPage;
+    private final IntBuffer postingSite;
+    private final FloatBuffer postingRank;
+    private final IntBuffer pageIds;
+    private final IntBuffer pageSites;
+    private final IntBuffer deleted;
+    private final CharBuffer chars;
+
+    private IndexSegment(Path file, ByteBuffer buffer) throws IOException {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Неизвестный формат сегмента индекса: " + file);
+        }
+        this.file = file;
+        this.size = buffer.capacity();
+        lemmaCount = buffer.getInt(8);
+        postingCount = buffer.getInt(12);
+        pageCount = buffer.getInt(16);
+        deleteCount = buffer.getInt(20);
+        int charCount = buffer.getInt(24);
+
+        int position = HEADER_INTS * Integer.BYTES;
+        lemmaStart = slice(buffer, position, lemmaCount + 1).asIntBuffer();
+        position += (lemmaCount + 1) * Integer.BYTES;
+        postingStart = slice(buffer, position, lemmaCount + 1).asIntBuffer();
+        position += (lemmaCount + 1) * Integer.BYTES;
+        postingPage = slice(buffer, position, postingCount).asIntBuffer();
+        position += postingCount * Integer.BYTES;
+        postingSite = slice(buffer, position, postingCount).asIntBuffer();
+        position += postingCount * Integer.BYTES;
+        postingRank = slice(buffer, position, postingCount).asFloatBuffer();
+        position += postingCount * Float.BYTES;
+        pageIds = slice(buffer, position, pageCount).asIntBuffer();
+        position += pageCount * Integer.BYTES;
+        pageSites = slice(buffer, position, pageCount).asIntBuffer();
+        position += pageCount * Integer.BYTES;
+        deleted = slice(buffer, position, deleteCount).asIntBuffer();
+        position += deleteCount * Integer.BYTES;
+        chars = buffer.slice(position, charCount * Character.BYTES).asCharBuffer();
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int position, int ints) {
+        return buffer.slice(position, ints * Integer.BYTES);
+    }
+
+    public static IndexSegment open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // Отображение остаётся действительным и после закрытия канала
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new IndexSegment(file, buffer);
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    // Размер файла в байтах
+    public long size() {
+        return size;
+    }
+
+    public int lemmaCount() {
+        return lemmaCount;
+    }
+
+    public int postingCount() {
+        return postingCount;
+    }
+
+    /**
+     * Номер леммы в сегменте или -1, если её в нём нет.
+     */
+    public int find(String lemma) {
+        int low = 0;
+        int high = lemmaCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compare(middle, lemma);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    public String lemma(int index) {
+        int start = lemmaStart.get(index);
+        return chars.subSequence(start, lemmaStart.get(index + 1)).toString();
+    }
+
+    // Постинги леммы index занимают номера [postingStart(index), postingEnd(index))
+    public int postingStart(int index) {
+        return postingStart.get(index);
+    }
+
+    public int postingEnd(int index) {
+        return postingStart.get(index + 1);
+    }
+
+    public int page(int posting) {
+        return postingPage.get(posting);
+    }
+
+    public int site(int posting) {
+        return postingSite.get(posting);
+    }
+
+    public float rank(int posting) {
+        return postingRank.get(posting);
+    }
+
+    public int pageCount() {
+        return pageCount;
+    }
+
+    public int pageId(int index) {
+        return pageIds.get(index);
+    }
+
+    public int pageSite(int index) {
+        return pageSites.get(index);
+    }
+
+    public int deleteCount() {
+        return deleteCount;
+    }
+
+    public int deleted(int index) {
+        return deleted.get(index);
+    }
+
+    private int compare(int index, String lemma) {
+        int start = lemmaStart.get(index);
+        int length = lemmaStart.get(index + 1) - start;
+        int common = Math.min(length, lemma.length());
+        for (int i = 0; i < common; i++) {
+            int difference = chars.get(start + i) - lemma.charAt(i);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return length - lemma.length();
+    }
+
+    // Сколько байт займут в сегменте лемма и её постинги; по этой оценке снимок делится на сегменты
+    public static long lemmaSize(String lemma, int postingCount) {
+        return 2L * Integer.BYTES + 3L * postingCount * Integer.BYTES + (long) lemma.length() * Character.BYTES;
+    }
+
+    /**
+     * Записывает сегмент. Ключи postings - леммы в порядке String.compareTo; постинги каждой леммы
+     * сортируются по странице при записи. pageIds и pageSites - добавленные страницы, deleted - удалённые.
+     */
+    public static void write(Path file, SortedMap<String, Postings> postings,
+                             int[] pageIds, int[] pageSites, int[] deleted) throws IOException {
+        int postingCount = postings.values().stream().mapToInt(Postings::size).sum();
+        int charCount = postings.keySet().stream().mapToInt(String::length).sum();
+        long size = (long) HEADER_INTS * Integer.BYTES
+                + 2L * (postings.size() + 1) * Integer.BYTES
+                + 3L * postingCount * Integer.BYTES
+                + 2L * pageIds.length * Integer.BYTES
+                + (long) deleted.length * Integer.BYTES
+                + (long) charCount * Character.BYTES;
+        // Файл отображается в память одним буфером
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Сегмент индекса больше 2 ГБ: " + file);
+        }
+        postings.values().forEach(Postings::sortByPage);
+
+        try (OutputStream stream = Files.newOutputStream(file);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(postings.size());
+            out.writeInt(postingCount);
+            out.writeInt(pageIds.length);
+            out.writeInt(deleted.length);
+            out.writeInt(charCount);
+
+            int offset = 0;
+            for (String lemma : postings.keySet()) {
+                out.writeInt(offset);
+                offset += lemma.length();
+            }
+            out.writeInt(offset);
+
+            int posting = 0;
+            for (Postings list : postings.values()) {
+                out.writeInt(posting);
+                posting += list.size();
+            }
+            out.writeInt(posting);
+
+            for (Postings list : postings.values()) {
+                for (int i = 0; i < list.size(); i++) {
+                    out.writeInt(list.pages[i]);
+                }
+            }
+            for (Postings list : postings.values()) {
+                for (int i = 0; i < list.size(); i++) {
+                    out.writeInt(list.sites[i]);
+                }
+            }
+            for (Postings list : postings.values()) {
+                for (int i = 0; i < list.size(); i++) {
+                    out.writeFloat(list.ranks[i]);
+                }
+            }
+
+            for (int pageId : pageIds) {
+                out.writeInt(pageId);
+            }
+            for (int pageSite : pageSites) {
+                out.writeInt(pageSite);
+            }
+            for (int pageId : deleted) {
+                out.writeInt(pageId);
+            }
+            for (String lemma : postings.keySet()) {
+                out.writeChars(lemma);
+            }
+        }
+    }
+
+    /**
+     * Постинги одной леммы, накапливаемые для записи сегмента.
+     */
+    public static final class Postings {
+        private int[] pages = new int[4];
+        private int[] sites = new int[4];
+        private float[] ranks = new float[4];
+        private int size;
+
+        public void add(int page, int site, float rank) {
+            if (size == pages.length) {
+                pages = Arrays.copyOf(pages, size * 2);
+                sites = Arrays.copyOf(sites, size * 2);
+                ranks = Arrays.copyOf(ranks, size * 2);
+            }
+            pages[size] = page;
+            sites[size] = site;
+            ranks[size] = rank;
+            size++;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int page(int index) {
+            return pages[index];
+        }
+
+        public int site(int index) {
+            return sites[index];
+        }
+
+        public float rank(int index) {
+            return ranks[index];
+        }
+
+        // Страницы обычно добавляются по возрастанию номера, тогда сортировать нечего
+        public void sortByPage() {
+            boolean sorted = true;
+            for (int i = 1; i < size && sorted; i++) {
+                sorted = pages[i - 1] <= pages[i];
+            }
+            if (sorted) {
+                return;
+            }
+            long[] keys = new long[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = ((long) pages[i] << 32) | i;
+            }
+            Arrays.sort(keys);
+            int[] sortedPages = new int[size];
+            int[] sortedSites = new int[size];
+            float[] sortedRanks = new float[size];
+            for (int i = 0; i < size; i++) {
+                int from = (int) keys[i];
+                sortedPages[i] = pages[from];
+                sortedSites[i] = sites[from];
+                sortedRanks[i] = ranks[from];
+            }
+            pages = sortedPages;
+            sites = sortedSites;
+            ranks = sortedRanks;
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package searchengine.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Снимок индекса для быстрого запуска новой реплики: сайты, метаданные страниц, словарь лемм и постинги.
+ * Содержимое страниц в снимок не входит - его реплика читает из своей копии БД.
+ * <p>
+ * Файл читается и пишется одним последовательным проходом, постинги - по одной лемме, поэтому снимок
+ * ни при записи, ни при чтении не держится в памяти целиком. Числа - переменной длины (по 7 бит в байте),
+ * id страниц в списках - разностями с предыдущим, строки - длина и UTF-8. Ранг леммы на странице -
+ * число её вхождений, поэтому хранится целым.
+ * <p>
+ * Формат: magic, version (int, big-endian), время создания (long);
+ * число сайтов и для каждого: id, url, name, status, statusTime, есть ли lastError и lastError;
+ * число страниц и для каждой по возрастанию id: разность id, номер сайта в списке, path, code;
+ * число лемм (int - дописывается, когда леммы записаны; в версии 1 - переменной длины)
+ * и для каждой по алфавиту: лемма, число постингов и для каждого: разность id страницы, ранг.
+ * Файл пишется во временный и переименовывается, поэтому недописанный снимок не подменит готовый.
+ */
+public final class IndexSnapshot {
+
+    private static final int MAGIC = 0x49534E50; // "ISNP"
+    private static final int VERSION = 2;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private IndexSnapshot() {
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static final class SiteEntry {
+        private final int id;
+        private final String url;
+        private final String name;
+        private final String status;
+        private final String statusTime;
+        private final String lastError;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static final class PageEntry {
+        private final int id;
+        private final int siteId;
+        private final String path;
+        private final int code;
+    }
+
+    /**
+     * Начинает запись снимка: сайты и страницы (по возрастанию id) пишутся сразу, постинги - по одной лемме
+     * через {@link Writer#add}. Снимок появляется на месте file только после {@link Writer#commit()}.
+     */
+    public static Writer create(Path file, long createdAt, List<SiteEntry> sites, List<PageEntry> pages)
+            throws IOException {
+        return new Writer(file, createdAt, sites, pages);
+    }
+
+    /**
+     * Последовательная запись снимка. Леммы передаются по алфавиту, каждая один раз - в таком порядке
+     * их ждёт загрузка снимка.
+     */
+    public static final class Writer implements Closeable {
+        private final Path file;
+        private final Path temporary;
+        private final DataOutputStream out;
+        // Смещение числа лемм: оно известно только в конце записи
+        private final int lemmaCountOffset;
+        @Getter
+        private int lemmaCount;
+        @Getter
+        private long postingCount;
+        private String lastLemma;
+        private boolean committed;
+
+        private Writer(Path file, long createdAt, List<SiteEntry> sites, List<PageEntry> pages) throws IOException {
+            this.file = file;
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            Map<Integer, Integer> siteIndexes = new TreeMap<>();
+            for (int i = 0; i < sites.size(); i++) {
+                siteIndexes.put(sites.get(i).getId(), i);
+            }
+
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), BUFFER_SIZE));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(createdAt);
+
+                writeVarInt(out, sites.size());
+                for (SiteEntry site : sites) {
+                    writeVarInt(out, site.getId());
+                    writeString(out, site.getUrl());
+                    writeString(out, site.getName());
+                    writeString(out, site.getStatus());
+                    writeString(out, site.getStatusTime());
+                    out.writeBoolean(site.getLastError() != null);
+                    if (site.getLastError() != null) {
+                        writeString(out, site.getLastError());
+                    }
+                }
+
+                writeVarInt(out, pages.size());
+                int previous = 0;
+                for (PageEntry page : pages) {
+                    writeVarInt(out, page.getId() - previous);
+                    previous = page.getId();
+                    writeVarInt(out, siteIndexes.get(page.getSiteId()));
+                    writeString(out, page.getPath());
+                    writeVarInt(out, page.getCode());
+                }
+
+                lemmaCountOffset = out.size();
+                out.writeInt(0);
+            } catch (IOException | RuntimeException e) {
+                close();
+                throw e;
+            }
+        }
+
+        /**
+         * Дописывает постинги леммы; лемма должна идти по алфавиту после предыдущей.
+         */
+        public void add(String lemma, IndexSegment.Postings postings) throws IOException {
+            if (lastLemma != null && lemma.compareTo(lastLemma) <= 0) {
+                throw new IllegalArgumentException("Лемма " + lemma + " записывается в снимок после " + lastLemma);
+            }
+            lastLemma = lemma;
+            postings.sortByPage();
+            writeString(out, lemma);
+            writeVarInt(out, postings.size());
+            int previous = 0;
+            for (int i = 0; i < postings.size(); i++) {
+                writeVarInt(out, postings.page(i) - previous);
+                previous = postings.page(i);
+                writeVarInt(out, Math.round(postings.rank(i)));
+            }
+            lemmaCount++;
+            postingCount += postings.size();
+        }
+
+        /**
+         * Дописывает число лемм и ставит снимок на место file.
+         */
+        public void commit() throws IOException {
+            out.close();
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, lemmaCount), lemmaCountOffset);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+        }
+
+        // Без commit недописанный снимок удаляется
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                out.close();
+                Files.deleteIfExists(temporary);
+            }
+        }
+    }
+
+    /**
+     * Открывает снимок для чтения. Сайты и страницы читаются сразу, постинги - по одной лемме
+     * через {@link Reader#next()}, поэтому снимок не загружается в память целиком.
+     */
+    public static Reader open(Path file) throws IOException {
+        return new Reader(file);
+    }
+
+    /**
+     * Последовательное чтение снимка. Постинги каждой леммы идут по возрастанию страниц - так их пишет Writer.
+     */
+    public static final class Reader implements Closeable {
+        private final DataInputStream in;
+        @Getter
+        private final long createdAt;
+        @Getter
+        private final List<SiteEntry> sites;
+        @Getter
+        private final List<PageEntry> pages;
+        @Getter
+        private final int lemmaCount;
+        // Сайт страницы по id нужен постингам; id страниц идут по возрастанию, поэтому хватает массива
+        private final int[] pageSites;
+        private int read;
+        @Getter
+        private String lemma;
+        @Getter
+        private IndexSegment.Postings postings;
+
+        private Reader(Path file) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE));
+            try {
+                int magic = in.readInt();
+                int version = in.readInt();
+                if (magic != MAGIC || version < 1 || version > VERSION) {
+                    throw new IOException("Неизвестный формат снимка индекса: " + file);
+                }
+                createdAt = in.readLong();
+
+                int siteCount = readVarInt(in);
+                sites = new ArrayList<>(siteCount);
+                for (int i = 0; i < siteCount; i++) {
+                    int id = readVarInt(in);
+                    String url = readString(in);
+                    String name = readString(in);
+                    String status = readString(in);
+                    String statusTime = readString(in);
+                    String lastError = in.readBoolean() ? readString(in) : null;
+                    sites.add(new SiteEntry(id, url, name, status, statusTime, lastError));
+                }
+
+                int pageCount = readVarInt(in);
+                pages = new ArrayList<>(pageCount);
+                int[] sitesById = new int[0];
+                int previous = 0;
+                for (int i = 0; i < pageCount; i++) {
+                    int id = previous + readVarInt(in);
+                    previous = id;
+                    int siteId = sites.get(readVarInt(in)).getId();
+                    pages.add(new PageEntry(id, siteId, readString(in), readVarInt(in)));
+                    if (id >= sitesById.length) {
+                        sitesById = Arrays.copyOf(sitesById, Math.max(id + 1, sitesById.length * 2));
+                    }
+                    sitesById[id] = siteId;
+                }
+                pageSites = sitesById;
+                lemmaCount = version == 1 ? readVarInt(in) : in.readInt();
+            } catch (IOException | RuntimeException e) {
+                in.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Читает следующую лемму и её постинги; false, если лемм больше нет.
+         */
+        public boolean next() throws IOException {
+            if (read == lemmaCount) {
+                return false;
+            }
+            read++;
+            lemma = readString(in);
+            int postingCount = readVarInt(in);
+            postings = new IndexSegment.Postings();
+            int previous = 0;
+            for (int j = 0; j < postingCount; j++) {
+                int page = previous + readVarInt(in);
+                previous = page;
+                if (page >= pageSites.length || pageSites[page] == 0) {
+                    throw new IOException("Постинг леммы " + lemma + " ссылается на страницу " + page
+                            + ", которой нет в снимке");
+                }
+                postings.add(page, pageSites[page], readVarInt(in));
+            }
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Повреждённое число в снимке индекса");
+    }
+
+    // writeUTF ограничен 64 КБ, а текст ошибки сайта может быть длиннее
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -1,83 +1,221 @@
 package searchengine.utils;
 
 
-import lombok.SneakyThrows;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
+import org.jsoup.UnsupportedMimeTypeException;
+import org.springframework.http.HttpStatus;
 import searchengine.services.impl.IndexingServiceImpl;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.concurrent.ConcurrentSkipListSet;
-import java.util.concurrent.RecursiveTask;
-
-
-public class Indexing extends RecursiveTask<ConcurrentSkipListSet<String>> {
-
-    private static ConcurrentSkipListSet<String> links = new ConcurrentSkipListSet<>();
-    private String link;
+import java.util.concurrent.RecursiveAction;
+import java.util.regex.Pattern;
+
+
+/**
+ * Обход сайта: каждая задача один раз загружает и лемматизирует свою страницу, сразу передаёт её
+ * в ограниченную очередь на сохранение и порождает задачи для новых ссылок.
+ * Если очередь заполнена, задачи обхода ждут, пока сохранение не разгрузит её.
+ * Корневая задача сразу ставит в обход и страницы из карты сайта, не дожидаясь ссылок на них,
+ * а при продолжении обхода после перезапуска - фронт из контрольной точки вместо главной страницы.
+ * <p>
+ * При переиндексации страница, которая по карте сайта не менялась, не загружается, а переносится в новое
+ * поколение из сохранённого HTML видимого; остальные загружаются условным запросом с валидаторами видимого
+ * поколения, и при ответе 304 страница тоже переносится.
+ * <p>
+ * Страница, не загруженная из-за сетевой ошибки (после повторов в {@link PageFetcher}), не считается
+ * отсутствующей: адрес запоминается в контексте и загружается ещё раз в конце обхода ({@link #retryFailed}).
+ */
+public class Indexing extends RecursiveAction {
+
+    private static final String LINK_REGEX = "https?://[^,\\s]+";
+    // Ссылки на файлы, которые заведомо не HTML, отбрасываются ещё до запроса
+    private static final Pattern BINARY_LINK = Pattern.compile(
+            "(?i).*\\.(pdf|jpe?g|png|gif|webp|svg|ico|bmp|tiff?|zip|rar|7z|gz|tgz|bz2|xz|tar|"
+                    + "mp3|ogg|wav|flac|mp4|m4v|avi|mov|mkv|webm|wmv|exe|msi|dmg|apk|iso|bin|"
+                    + "docx?|xlsx?|pptx?|odt|ods|rtf|csv|woff2?|ttf|eot)([?#].*)?");
+
+    private final CrawlContext context;
+    private final SiteProgress progress;
+    private final String link;
+    private final boolean root;
+    // Адреса, которые корневая задача ставит в обход вместо загрузки своей страницы
+    private final Collection<String> seeds;
+    // Последняя попытка: ошибка загрузки записывается как раньше, без откладывания на конец обхода
+    private final boolean finalAttempt;
+
+    public Indexing(String link, CrawlContext context) {
+        this(link, context, true, context.getResumeFrontier().isEmpty() ? null : context.getResumeFrontier(), false);
+        if (context.schedule(link)) {
+            progress.onDiscovered();
+        }
+    }
 
-    public Indexing(String link) {
+    private Indexing(String link, CrawlContext context, boolean root, Collection<String> seeds, boolean finalAttempt) {
         this.link = link;
+        this.context = context;
+        this.progress = context.getProgress();
+        this.root = root;
+        this.seeds = seeds;
+        this.finalAttempt = finalAttempt;
+    }
+
+    /**
+     * Повторный проход по адресам, не загруженным из-за сетевых ошибок; запускается после основного обхода.
+     */
+    public static Indexing retryFailed(String link, CrawlContext context) {
+        return new Indexing(link, context, true, context.drainFailed(), true);
     }
 
 
-    @SneakyThrows
     @Override
-    protected ConcurrentSkipListSet<String> compute() {
-        Thread.sleep(1000);
-        Set<Indexing> tasks = new HashSet<>();
-        String regex = "https?://[^,\\s]+";
+    protected void compute() {
+        if (!IndexingServiceImpl.isStopExecutor()) {
+            return;
+        }
+
+        if (seeds != null) {
+            forkSeeds();
+            return;
+        }
 
-        Elements elements;
+        PreviousPage previous = context.getPrevious().apply(link);
+        // Страница из карты сайта не менялась с прошлой индексации - берём её из видимого поколения
+        CrawledPage page = context.isUnchanged(link, previous) ? context.getRestore().apply(link) : null;
+        long start = 0;
         try {
-            elements = Jsoup.connect(link)
-                    .userAgent("Mozilla").get().select("a");
+            if (page == null) {
+                if (context.getDelayMillis() > 0) Thread.sleep(context.getDelayMillis());
+                if (finalAttempt) {
+                    // Хост на паузе: при последней попытке дожидаемся её конца, а не отказываемся сразу
+                    long paused = PageFetcher.getInstance().hostPausedFor(link);
+                    if (paused > 0) Thread.sleep(paused);
+                }
+                start = System.currentTimeMillis();
+                page = fetch(previous);
+                progress.onFetched(System.currentTimeMillis() - start, page.getCode() == HttpStatus.OK.value());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (UnsupportedMimeTypeException | BodyTooLargeException e) {
+            // Не HTML-документ или слишком большой ответ: страницу пропускаем, обход продолжается
+            progress.onSkipped(false);
+            context.complete(link);
+            if (root) throw new RuntimeException(e);
+            return;
+        } catch (InterruptedIOException e) {
+            if (!(e instanceof SocketTimeoutException)) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (root) throw new RuntimeException(e);
+            deferOrSkip(true);
+            return;
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            if (root) throw new RuntimeException(e);
+            if (!finalAttempt) {
+                deferOrSkip(true);
+                return;
+            }
+            progress.onFetched(System.currentTimeMillis() - start, false);
+            page = CrawledPage.builder().url(link).code(HttpStatus.NOT_FOUND.value()).build();
+        }
+
+        // Сервер перегружен или недоступен за прокси: ответ не сохраняем, пока есть ещё попытка
+        if (!root && !finalAttempt && PageFetcher.isRetryable(page.getCode())) {
+            deferOrSkip(false);
+            return;
+        }
+
+        // Ссылки ставятся в обход до передачи страницы на запись: когда страница выйдет из фронта,
+        // её потомки в нём уже будут, и контрольная точка их не потеряет
+        Set<Indexing> tasks = new HashSet<>();
+        fork(page.getLinks(), tasks);
+        if (root) {
+            fork(context.getSitemap().keySet(), tasks);
+        }
+
+        if (enqueue(page)) {
+            tasks.forEach(Indexing::join);
         }
-        for (Element element : elements) {
+    }
+
+    // Загрузка с валидаторами видимого поколения; ответ 304 заменяется сохранённой копией страницы
+    private CrawledPage fetch(PreviousPage previous) throws IOException {
+        String etag = previous == null ? null : previous.getEtag();
+        String lastModified = previous == null ? null : previous.getLastModified();
+        CrawledPage page = IndexingServiceImpl.fetchPage(link, etag, lastModified, context.getMaxBodySize());
+        if (page.getCode() != HttpStatus.NOT_MODIFIED.value()) {
+            return page;
+        }
+        CrawledPage restored = context.getRestore().apply(link);
+        // Копии нет (страницу успели удалить из видимого поколения) - загружаем без условий
+        return restored != null ? restored : IndexingServiceImpl.fetchPage(link, null, null, context.getMaxBodySize());
+    }
+
+    // Ошибка загрузки: в основном обходе адрес откладывается на конец (и остаётся во фронте для контрольной
+    // точки), при последней попытке страница пропускается
+    private void deferOrSkip(boolean failure) {
+        if (finalAttempt) {
+            progress.onSkipped(failure);
+            context.complete(link);
+        } else {
+            progress.onDeferred(failure);
+            context.fail(link);
+        }
+    }
+
+    private void forkSeeds() {
+        Set<Indexing> tasks = new HashSet<>();
+        for (String seed : seeds) {
+            if (!IndexingServiceImpl.isStopExecutor()) {
+                break;
+            }
+            // Адрес повторного прохода уже учтён в этом обходе, адрес из контрольной точки - ещё нет
+            if (context.reschedule(seed)) {
+                progress.onDiscovered();
+            }
+            Indexing indexing = new Indexing(seed, context, false, null, finalAttempt);
+            indexing.fork();
+            tasks.add(indexing);
+        }
+        tasks.forEach(Indexing::join);
+    }
+
+    private void fork(Collection<String> newLinks, Set<Indexing> tasks) {
+        for (String newLink : newLinks) {
             if (!IndexingServiceImpl.isStopExecutor()) {
                 IndexingServiceImpl.setStopExecutor();
-                return links;
+                break;
             }
 
-            String newLink = element.absUrl("href");
-            boolean checkLink = newLink.matches(regex) &&
+            boolean checkLink = newLink.matches(LINK_REGEX) &&
                     newLink.contains(getDomen(link)) &&
-                    !links.contains(newLink) &&
-                    !newLink.contains(".pdf") &&
-                    !newLink.contains(".jpg")
-                    && checkException(newLink) == null;
-
+                    !BINARY_LINK.matcher(newLink).matches();
 
-            if (!checkLink) {
+            if (!checkLink || !context.schedule(newLink)) {
                 continue;
             }
-            links.add(newLink);
-            Indexing indexing = new Indexing(newLink);
+            progress.onDiscovered();
+            Indexing indexing = new Indexing(newLink, context, false, null, finalAttempt);
             indexing.fork();
             tasks.add(indexing);
         }
-
-        tasks.forEach(task -> {
-            task.join();
-        });
-        return links;
-
     }
 
-    private Exception checkException(String link) {
+    private boolean enqueue(CrawledPage page) {
         try {
-            Document document = Jsoup.connect(link)
-                    .userAgent("Mozilla").get();
-        } catch (IOException e) {
-            return e;
+            context.getPages().put(IndexingServiceImpl.lemmatize(page));
+            progress.onQueued();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
         }
-        return null;
     }
 
     private String getDomen(String url) {
@@ -0,0 +1,63 @@
+package searchengine.utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Лемматизация текста на русском и английском за один проход: текст один раз делится на слова,
+ * каждое слово по алфавиту уходит в свою морфологию, а вхождения считаются в одном общем подсчёте.
+ * Слова выделяются так же, как в {@link LemmaFinder} и {@link LemmaFinderEn}: буквы а-я и a-z,
+ * слово из букв разных алфавитов делится на части по алфавиту.
+ */
+public class LemmaAnalyzer {
+
+    private final LemmaFinder russian;
+    private final LemmaFinderEn english;
+
+    private LemmaAnalyzer(LemmaFinder russian, LemmaFinderEn english) {
+        this.russian = russian;
+        this.english = english;
+    }
+
+    public static LemmaAnalyzer getInstance() throws IOException {
+        return new LemmaAnalyzer(LemmaFinder.getInstance(), LemmaFinderEn.getInstance());
+    }
+
+    public LemmaCounts collectLemmaIds(String text) {
+        return LemmaCounter.count(tokenize(text), word -> isRussianLetter(word.charAt(0))
+                ? russian.lemmaId(word)
+                : english.lemmaId(word));
+    }
+
+    public Map<String, Integer> collectLemmasFromText(String text) {
+        return collectLemmaIds(text).toMap();
+    }
+
+    static String[] tokenize(String text) {
+        String lower = text.toLowerCase(Locale.ROOT);
+        List<String> words = new ArrayList<>();
+        int start = -1;
+        boolean russianWord = false;
+        for (int i = 0; i <= lower.length(); i++) {
+            char c = i < lower.length() ? lower.charAt(i) : ' ';
+            boolean russianLetter = isRussianLetter(c);
+            boolean letter = russianLetter || (c >= 'a' && c <= 'z');
+            if (start >= 0 && (!letter || russianLetter != russianWord)) {
+                words.add(lower.substring(start, i));
+                start = -1;
+            }
+            if (letter && start < 0) {
+                start = i;
+                russianWord = russianLetter;
+            }
+        }
+        return words.toArray(String[]::new);
+    }
+
+    private static boolean isRussianLetter(char c) {
+        return c >= 'а' && c <= 'я';
+    }
+}
@@ -0,0 +1,96 @@
+package searchengine.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.ToIntFunction;
+
+/**
+ * Подсчёт лемм в массиве слов. Большие тексты (каталоги, ветки форумов) делятся на части,
+ * которые считаются параллельно в общем ForkJoinPool и сливаются попарно; небольшие страницы
+ * считаются в одном потоке - там деление не окупается.
+ * Часть текста превращается в массив номеров лемм, который сортируется и сворачивается в пары
+ * "номер - количество"; слияние частей - слияние отсортированных массивов, без хеш-таблиц и boxing.
+ */
+public class LemmaCounter extends RecursiveTask<LemmaCounts> {
+
+    // Меньше этого числа слов текст считается последовательно
+    static final int PARALLEL_THRESHOLD = 20_000;
+    static final int CHUNK_SIZE = 4_096;
+
+    private final String[] words;
+    private final int from;
+    private final int to;
+    private final ToIntFunction<String> lemmatizer;
+
+    private LemmaCounter(String[] words, int from, int to, ToIntFunction<String> lemmatizer) {
+        this.words = words;
+        this.from = from;
+        this.to = to;
+        this.lemmatizer = lemmatizer;
+    }
+
+    /**
+     * @param lemmatizer возвращает номер леммы слова ({@link LemmaIds}) или -1, если слово не учитывается
+     */
+    public static LemmaCounts count(String[] words, ToIntFunction<String> lemmatizer) {
+        return words.length < PARALLEL_THRESHOLD
+                ? countRange(words, 0, words.length, lemmatizer)
+                : ForkJoinPool.commonPool().invoke(new LemmaCounter(words, 0, words.length, lemmatizer));
+    }
+
+    @Override
+    protected LemmaCounts compute() {
+        if (to - from <= CHUNK_SIZE) {
+            return countRange(words, from, to, lemmatizer);
+        }
+        int middle = (from + to) >>> 1;
+        LemmaCounter left = new LemmaCounter(words, from, middle, lemmatizer);
+        left.fork();
+        LemmaCounts right = new LemmaCounter(words, middle, to, lemmatizer).compute();
+        return merge(left.join(), right);
+    }
+
+    private static LemmaCounts countRange(String[] words, int from, int to, ToIntFunction<String> lemmatizer) {
+        int[] ids = new int[to - from];
+        int found = 0;
+        for (int i = from; i < to; i++) {
+            int id = lemmatizer.applyAsInt(words[i]);
+            if (id >= 0) ids[found++] = id;
+        }
+        Arrays.sort(ids, 0, found);
+
+        int[] counts = new int[found];
+        int size = 0;
+        for (int i = 0; i < found; i++) {
+            if (size > 0 && ids[size - 1] == ids[i]) {
+                counts[size - 1]++;
+            } else {
+                ids[size] = ids[i];
+                counts[size++] = 1;
+            }
+        }
+        return new LemmaCounts(ids, counts, size);
+    }
+
+    private static LemmaCounts merge(LemmaCounts first, LemmaCounts second) {
+        int[] ids = new int[first.size() + second.size()];
+        int[] counts = new int[ids.length];
+        int i = 0;
+        int j = 0;
+        int size = 0;
+        while (i < first.size() || j < second.size()) {
+            if (j == second.size() || (i < first.size() && first.id(i) < second.id(j))) {
+                ids[size] = first.id(i);
+                counts[size++] = first.count(i++);
+            } else if (i == first.size() || second.id(j) < first.id(i)) {
+                ids[size] = second.id(j);
+                counts[size++] = second.count(j++);
+            } else {
+                ids[size] = first.id(i);
+                counts[size++] = first.count(i++) + second.count(j++);
+            }
+        }
+        return new LemmaCounts(ids, counts, size);
+    }
+}
@@ -0,0 +1,44 @@
+package searchengine.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Результат подсчёта лемм текста: номера лемм ({@link LemmaIds}) по возрастанию и число их вхождений.
+ */
+public class LemmaCounts {
+
+    private final int[] ids;
+    private final int[] counts;
+    private final int size;
+
+    LemmaCounts(int[] ids, int[] counts, int size) {
+        this.ids = ids;
+        this.counts = counts;
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int id(int index) {
+        return ids[index];
+    }
+
+    public String lemma(int index) {
+        return LemmaIds.lemma(ids[index]);
+    }
+
+    public int count(int index) {
+        return counts[index];
+    }
+
+    public Map<String, Integer> toMap() {
+        Map<String, Integer> lemmas = new HashMap<>(size * 4 / 3 + 1);
+        for (int i = 0; i < size; i++) {
+            lemmas.put(lemma(i), counts[i]);
+        }
+        return lemmas;
+    }
+}
@@ -0,0 +1,220 @@
+package searchengine.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Заранее посчитанная таблица "словоформа -> леммы" в файле, отображённом в память.
+ * <p>
+ * Словоформы отсортированы, поиск - двоичный, сравнение идёт прямо с символами в файле,
+ * поэтому поиск ничего не создаёт. Строки лемм создаются при первом обращении и кешируются.
+ * Файл готовит {@link LemmaDictionaryBuilder}; несколько JVM на одной машине делят его через кеш страниц ОС.
+ * <p>
+ * Формат (big-endian): magic, version, flags, formCount, lemmaCount, refCount, charCount
+ * (в версии 1 поля flags нет); flags & 1 - словарь полный: в нём все словоформы морфологии;
+ * int formStart[formCount + 1] - начало словоформы в массиве символов;
+ * int refStart[formCount + 1] - начало списка лемм словоформы в refs;
+ * int refs[refCount] - номера лемм; int lemmaStart[lemmaCount + 1];
+ * char chars[charCount]; byte particle[formCount] - 1, если словоформа служебная часть речи.
+ */
+public final class LemmaDictionary {
+
+    private static final int MAGIC = 0x4C444943; // "LDIC"
+    private static final int VERSION = 2;
+    private static final int COMPLETE = 1;
+
+    private final IntBuffer formStart;
+    private final IntBuffer refStart;
+    private final IntBuffer refs;
+    private final IntBuffer lemmaStart;
+    private final CharBuffer chars;
+    private final ByteBuffer particle;
+    private final int formCount;
+    private final boolean complete;
+    private final String[] lemmas;
+
+    private LemmaDictionary(ByteBuffer buffer) throws IOException {
+        int version = buffer.getInt(4);
+        if (buffer.getInt(0) != MAGIC || version < 1 || version > VERSION) {
+            throw new IOException("Неизвестный формат словаря лемм");
+        }
+        int position = 2 * Integer.BYTES;
+        int flags = 0;
+        if (version >= 2) {
+            flags = buffer.getInt(position);
+            position += Integer.BYTES;
+        }
+        complete = (flags & COMPLETE) != 0;
+        formCount = buffer.getInt(position);
+        int lemmaCount = buffer.getInt(position + 4);
+        int refCount = buffer.getInt(position + 8);
+        int charCount = buffer.getInt(position + 12);
+
+        position += 4 * Integer.BYTES;
+        formStart = slice(buffer, position, formCount + 1).asIntBuffer();
+        position += (formCount + 1) * Integer.BYTES;
+        refStart = slice(buffer, position, formCount + 1).asIntBuffer();
+        position += (formCount + 1) * Integer.BYTES;
+        refs = slice(buffer, position, refCount).asIntBuffer();
+        position += refCount * Integer.BYTES;
+        lemmaStart = slice(buffer, position, lemmaCount + 1).asIntBuffer();
+        position += (lemmaCount + 1) * Integer.BYTES;
+        chars = buffer.slice(position, charCount * Character.BYTES).asCharBuffer();
+        position += charCount * Character.BYTES;
+        particle = buffer.slice(position, formCount);
+
+        lemmas = new String[lemmaCount];
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int position, int ints) {
+        return buffer.slice(position, ints * Integer.BYTES);
+    }
+
+    public static LemmaDictionary open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // Отображение остаётся действительным и после закрытия канала
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new LemmaDictionary(buffer);
+        }
+    }
+
+    /**
+     * Номер словоформы или -1, если её нет в словаре.
+     */
+    public int find(String word) {
+        int low = 0;
+        int high = formCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compare(middle, word);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    public boolean isParticle(int form) {
+        return particle.get(form) != 0;
+    }
+
+    public int lemmaCount(int form) {
+        return refStart.get(form + 1) - refStart.get(form);
+    }
+
+    public String lemma(int form, int index) {
+        int lemma = refs.get(refStart.get(form) + index);
+        String value = lemmas[lemma];
+        if (value == null) {
+            // Гонка безопасна: String неизменяема, в худшем случае строка создастся дважды
+            int start = lemmaStart.get(lemma);
+            value = chars.subSequence(start, lemmaStart.get(lemma + 1)).toString();
+            lemmas[lemma] = value;
+        }
+        return value;
+    }
+
+    public int size() {
+        return formCount;
+    }
+
+    /**
+     * В словаре все словоформы морфологии: слова, которого в нём нет, не знает и морфология.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    private int compare(int form, String word) {
+        int start = formStart.get(form);
+        int length = formStart.get(form + 1) - start;
+        int common = Math.min(length, word.length());
+        for (int i = 0; i < common; i++) {
+            int difference = chars.get(start + i) - word.charAt(i);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return length - word.length();
+    }
+
+    /**
+     * Записывает словарь. Ключи - словоформы, значения - их леммы в порядке морфологии;
+     * служебные словоформы перечислены в particles. complete - в forms все словоформы морфологии.
+     */
+    public static void write(Path file, SortedMap<String, List<String>> forms, Set<String> particles,
+                             boolean complete) throws IOException {
+        Map<String, Integer> lemmaIds = new LinkedHashMap<>();
+        int refCount = 0;
+        for (List<String> normalForms : forms.values()) {
+            for (String lemma : normalForms) {
+                lemmaIds.putIfAbsent(lemma, lemmaIds.size());
+            }
+            refCount += normalForms.size();
+        }
+        int charCount = forms.keySet().stream().mapToInt(String::length).sum()
+                + lemmaIds.keySet().stream().mapToInt(String::length).sum();
+
+        try (OutputStream stream = Files.newOutputStream(file);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(complete ? COMPLETE : 0);
+            out.writeInt(forms.size());
+            out.writeInt(lemmaIds.size());
+            out.writeInt(refCount);
+            out.writeInt(charCount);
+
+            int offset = 0;
+            for (String form : forms.keySet()) {
+                out.writeInt(offset);
+                offset += form.length();
+            }
+            out.writeInt(offset);
+            int lemmaOffset = offset;
+
+            int ref = 0;
+            for (List<String> normalForms : forms.values()) {
+                out.writeInt(ref);
+                ref += normalForms.size();
+            }
+            out.writeInt(ref);
+            for (List<String> normalForms : forms.values()) {
+                for (String lemma : normalForms) {
+                    out.writeInt(lemmaIds.get(lemma));
+                }
+            }
+
+            for (String lemma : lemmaIds.keySet()) {
+                out.writeInt(lemmaOffset);
+                lemmaOffset += lemma.length();
+            }
+            out.writeInt(lemmaOffset);
+
+            for (String form : forms.keySet()) {
+                out.writeChars(form);
+            }
+            for (String lemma : lemmaIds.keySet()) {
+                out.writeChars(lemma);
+            }
+            for (String form : forms.keySet()) {
+                out.writeByte(particles.contains(form) ? 1 : 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package searchengine.utils;
+
+import org.apache.lucene.morphology.LuceneMorphology;
+import org.jsoup.Jsoup;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Готовит файл {@link LemmaDictionary} одним из двух способов.
+ * <p>
+ * Полный словарь - из исходного словаря AOT (morphs.mrd и gramtab.tab), из которого собраны словари
+ * морфологии: перечисляются все леммы и все их словоформы, поэтому с таким словарём морфология при
+ * индексации и поиске не загружается вовсе. Сами файлы морфологии хранят только правила по окончаниям
+ * и перечислить словоформы не позволяют.
+ * <p>
+ * Частичный словарь - из списков слов или текстов (txt/html - например, сохранённых страниц индексируемых
+ * сайтов): леммы и признак служебной части речи для каждой словоформы считает морфология, а слова,
+ * которых в словаре нет, при индексации разбирает она же.
+ * <p>
+ * Запуск: java -cp ... searchengine.utils.LemmaDictionaryBuilder ru|en файл.dic --mrd morphs.mrd gramtab.tab [кодировка]
+ * или java -cp ... searchengine.utils.LemmaDictionaryBuilder ru|en файл.dic вход...
+ * где вход - файлы или каталоги; кодировка исходного словаря по умолчанию windows-1251.
+ */
+public class LemmaDictionaryBuilder {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3 || !(args[0].equals("ru") || args[0].equals("en"))
+                || (args[2].equals("--mrd") && args.length < 5)) {
+            System.err.println("Использование: LemmaDictionaryBuilder ru|en файл.dic --mrd morphs.mrd gramtab.tab [кодировка]");
+            System.err.println("           или LemmaDictionaryBuilder ru|en файл.dic вход...");
+            System.exit(1);
+        }
+        boolean russian = args[0].equals("ru");
+        Path output = Path.of(args[1]);
+        Predicate<List<String>> isParticle = russian
+                ? LemmaFinder.getInstance()::anyWordBaseBelongToParticle
+                : LemmaFinderEn.getInstance()::anyWordBaseBelongToParticle;
+        String letters = russian ? "[а-я]+" : "[a-z]+";
+
+        SortedMap<String, List<String>> forms = new TreeMap<>();
+        Set<String> particles = new HashSet<>();
+        boolean complete = args[2].equals("--mrd");
+        if (complete) {
+            Charset charset = args.length > 5 ? Charset.forName(args[5]) : Charset.forName("windows-1251");
+            Map<String, String> grammar = readGrammar(Path.of(args[4]), charset);
+            readMrd(Path.of(args[3]), charset, grammar, letters, isParticle, forms, particles);
+        } else {
+            Set<String> words = new HashSet<>();
+            for (int i = 2; i < args.length; i++) {
+                try (Stream<Path> files = Files.walk(Path.of(args[i]))) {
+                    for (Path file : files.filter(Files::isRegularFile).toList()) {
+                        words.addAll(readWords(file, russian ? "[^а-я\\s]" : "[^a-z\\s]"));
+                    }
+                }
+            }
+            analyze(words, russian ? LemmaFinder.morphology() : LemmaFinderEn.morphology(), isParticle,
+                    forms, particles);
+        }
+
+        LemmaDictionary.write(output, forms, particles, complete);
+        System.out.printf("%s: %d словоформ, из них служебных %d%s%n", output, forms.size(), particles.size(),
+                complete ? ", словарь полный" : "");
+    }
+
+    private static Set<String> readWords(Path file, String nonLetters) throws IOException {
+        String text = Files.readString(file, StandardCharsets.UTF_8);
+        if (file.toString().endsWith(".html") || file.toString().endsWith(".htm")) {
+            text = Jsoup.parse(text).text();
+        }
+        Set<String> words = new HashSet<>();
+        for (String word : text.toLowerCase(Locale.ROOT).replaceAll(nonLetters, " ").trim().split("\\s+")) {
+            if (!word.isEmpty()) words.add(word);
+        }
+        return words;
+    }
+
+    private static void analyze(Set<String> words, LuceneMorphology morphology, Predicate<List<String>> isParticle,
+                                SortedMap<String, List<String>> forms, Set<String> particles) {
+        for (String word : words) {
+            try {
+                if (isParticle.test(morphology.getMorphInfo(word))) {
+                    particles.add(word);
+                }
+                forms.put(word, morphology.getNormalForms(word));
+            } catch (RuntimeException e) {
+                // Слово морфология не разбирает - в словарь не попадает, при индексации его разберёт морфология
+                particles.remove(word);
+            }
+        }
+    }
+
+    // gramtab.tab: "анкод номер часть_речи граммемы"; строки с // - комментарии
+    private static Map<String, String> readGrammar(Path file, Charset charset) throws IOException {
+        Map<String, String> grammar = new HashMap<>();
+        for (String line : Files.readAllLines(file, charset)) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("//")) {
+                continue;
+            }
+            String[] fields = trimmed.split("\\s+", 3);
+            if (fields.length == 3) {
+                grammar.put(fields[0], fields[2]);
+            }
+        }
+        return grammar;
+    }
+
+    /**
+     * morphs.mrd: блоки "число строк, строки" - модели словоизменения (%окончание*анкод*приставка...),
+     * модели ударений, сессии, наборы приставок и леммы (основа, номер модели, ...; # - пустая основа).
+     * Словоформа - приставка, основа и окончание; лемма - первая словоформа модели.
+     */
+    private static void readMrd(Path file, Charset charset, Map<String, String> grammar, String letters,
+                                Predicate<List<String>> isParticle,
+                                SortedMap<String, List<String>> forms, Set<String> particles) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, charset)) {
+            List<String[][]> models = new ArrayList<>();
+            for (String line : readBlock(reader)) {
+                List<String[]> model = new ArrayList<>();
+                for (String flexia : line.split("%")) {
+                    if (!flexia.isEmpty()) {
+                        String[] fields = flexia.split("\\*");
+                        model.add(new String[]{
+                                fields[0].toLowerCase(Locale.ROOT),
+                                fields.length > 1 ? fields[1] : "",
+                                fields.length > 2 ? fields[2].toLowerCase(Locale.ROOT) : ""});
+                    }
+                }
+                models.add(model.toArray(String[][]::new));
+            }
+            readBlock(reader); // ударения
+            readBlock(reader); // сессии
+            readBlock(reader); // приставки
+
+            for (String line : readBlock(reader)) {
+                String[] fields = line.split(" ");
+                String base = fields[0].toLowerCase(Locale.ROOT);
+                if (base.startsWith("-")) {
+                    continue;
+                }
+                base = base.equals("#") ? "" : base;
+                String[][] model = models.get(Integer.parseInt(fields[1]));
+                if (model.length == 0) {
+                    continue;
+                }
+                String lemma = model[0][2] + base + model[0][0];
+                for (String[] flexia : model) {
+                    String form = flexia[2] + base + flexia[0];
+                    if (!form.matches(letters)) {
+                        continue;
+                    }
+                    List<String> lemmas = forms.computeIfAbsent(form, key -> new ArrayList<>(1));
+                    if (!lemmas.contains(lemma)) {
+                        lemmas.add(lemma);
+                    }
+                    String info = grammar.get(flexia[1]);
+                    if (info != null && isParticle.test(List.of(info))) {
+                        particles.add(form);
+                    }
+                }
+            }
+        }
+    }
+
+    private static List<String> readBlock(BufferedReader reader) throws IOException {
+        String header = reader.readLine();
+        if (header == null) {
+            throw new IOException("Файл .mrd оборван");
+        }
+        int count = Integer.parseInt(header.trim());
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String line = reader.readLine();
+            if (line == null) {
+                throw new IOException("Файл .mrd оборван");
+            }
+            lines.add(line.trim());
+        }
+        return lines;
+    }
+}
@@ -2,24 +2,63 @@ package searchengine.utils;
 
 import org.apache.lucene.morphology.LuceneMorphology;
 import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 
 public class LemmaFinder {
-    public final LuceneMorphology luceneMorphology;
     private static final String WORD_TYPE_REGEX = "\\W\\w&&[^а-яА-Я\\s]";
     private static final String[] particlesNames = new String[]{"МЕЖД", "ПРЕДЛ", "СОЮЗ"};
 
+    // Заранее посчитанные леммы; слова, которых в нём нет, разбирает морфология
+    private static volatile LemmaDictionary defaultDictionary;
+    private final LemmaDictionary dictionary;
+
+    // Словари морфологии загружаются долго, а разбор слов потокобезопасен: морфология одна на приложение
+    // и загружается при первом слове, которого нет в словаре лемм. С полным словарём она не нужна вовсе
+    private static volatile LuceneMorphology morphology;
+
+    private static volatile LemmaFinder instance;
+
     public static LemmaFinder getInstance() throws IOException {
-        LuceneMorphology morphology= new RussianLuceneMorphology();
-        return new LemmaFinder(morphology);
+        LemmaFinder finder = instance;
+        if (finder == null) {
+            synchronized (LemmaFinder.class) {
+                if (instance == null) {
+                    instance = new LemmaFinder(defaultDictionary);
+                }
+                finder = instance;
+            }
+        }
+        return finder;
+    }
+
+    public static synchronized void setDictionary(LemmaDictionary dictionary) {
+        defaultDictionary = dictionary;
+        instance = new LemmaFinder(dictionary);
+    }
+
+    public static LuceneMorphology morphology() {
+        LuceneMorphology loaded = morphology;
+        if (loaded == null) {
+            synchronized (LemmaFinder.class) {
+                if (morphology == null) {
+                    try {
+                        morphology = new RussianLuceneMorphology();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Не удалось загрузить морфологию", e);
+                    }
+                }
+                loaded = morphology;
+            }
+        }
+        return loaded;
     }
 
-    private LemmaFinder(LuceneMorphology luceneMorphology) {
-        this.luceneMorphology = luceneMorphology;
+    private LemmaFinder(LemmaDictionary dictionary) {
+        this.dictionary = dictionary;
     }
 
     private LemmaFinder(){
@@ -29,54 +68,92 @@ public class LemmaFinder {
     public Map<String, Integer> collectLemmas(String url) {
         Document elements;
         try {
-            elements = Jsoup.connect(url)
-                    .userAgent("Mozilla").get();
+            PageFetcher.Response response = PageFetcher.getInstance().fetchHtml(url, Map.of(), 0);
+            if (!response.isSuccess()) {
+                throw new IOException("HTTP " + response.getCode() + " для " + url);
+            }
+            elements = response.parse();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
-        String text = elements.text();
+        return collectLemmasFromText(elements.text());
+    }
 
-        String[] words = arrayContainsRussianWords(text);
-        HashMap<String, Integer> lemmas = new HashMap<>();
+    public Map<String, Integer> collectLemmasFromText(String text) {
+        return collectLemmaIds(text).toMap();
+    }
 
-        for (String word : words) {
-            if (word.isBlank()) {
-                continue;
-            }
+    // Подсчёт лемм текста по номерам из общего словаря LemmaIds
+    public LemmaCounts collectLemmaIds(String text) {
+        return LemmaCounter.count(arrayContainsRussianWords(text), this::lemmaId);
+    }
 
+    // Номер леммы слова (в нижнем регистре) в LemmaIds или -1, если слово не учитывается
+    int lemmaId(String word) {
+        String lemma = lemmaToCount(word);
+        return lemma == null ? -1 : LemmaIds.id(lemma);
+    }
 
-            List<String> wordBaseForms = luceneMorphology.getMorphInfo(word);
-            if (anyWordBaseBelongToParticle(wordBaseForms)) {
-                continue;
-            }
+    // Лемма, под которой слово учитывается в индексе, или null для служебных и неразобранных слов
+    private String lemmaToCount(String word) {
+        if (word.isBlank()) {
+            return null;
+        }
 
-            List<String> normalForms = luceneMorphology.getNormalForms(word);
-            if (normalForms.isEmpty()) {
-                continue;
-            }
+        int form = dictionary == null ? -1 : dictionary.find(word);
+        if (form >= 0) {
+            return dictionary.isParticle(form) || dictionary.lemmaCount(form) == 0
+                    ? null : dictionary.lemma(form, 0);
+        }
 
-            String normalWord = normalForms.get(0);
+        // Полный словарь содержит все слова морфологии: слова нет и там, оно само себе лемма
+        if (isComplete()) {
+            return word;
+        }
 
-            if (lemmas.containsKey(normalWord)) {
-                lemmas.put(normalWord, lemmas.get(normalWord) + 1);
-            } else {
-                lemmas.put(normalWord, 1);
-            }
+        List<String> wordBaseForms = morphology().getMorphInfo(word);
+        if (anyWordBaseBelongToParticle(wordBaseForms)) {
+            return null;
         }
 
-        return lemmas;
+        List<String> normalForms = morphology().getNormalForms(word);
+        return normalForms.isEmpty() ? null : normalForms.get(0);
+    }
+
+    // Слово - служебная часть речи
+    public boolean isParticle(String word) {
+        int form = dictionary == null ? -1 : dictionary.find(word);
+        if (form >= 0) {
+            return dictionary.isParticle(form);
+        }
+        return !isComplete() && anyWordBaseBelongToParticle(morphology().getMorphInfo(word));
+    }
+
+    private boolean isComplete() {
+        return dictionary != null && dictionary.isComplete();
     }
 
     public Set<String> getLemmaSet(String text) {
         String[] textArray = arrayContainsRussianWords(text);
         Set<String> lemmaSet = new HashSet<>();
         for (String word : textArray) {
-            if (!word.isEmpty() && isCorrectWordForm(word)) {
-                List<String> wordBaseForms = luceneMorphology.getMorphInfo(word);
+            int form = dictionary == null || word.isEmpty() ? -1 : dictionary.find(word);
+            if (form >= 0) {
+                if (!dictionary.isParticle(form)) {
+                    for (int i = 0; i < dictionary.lemmaCount(form); i++) {
+                        lemmaSet.add(dictionary.lemma(form, i));
+                    }
+                }
+                continue;
+            }
+            if (!word.isEmpty() && isComplete()) {
+                lemmaSet.add(word);
+            } else if (!word.isEmpty() && isCorrectWordForm(word)) {
+                List<String> wordBaseForms = morphology().getMorphInfo(word);
                 if (anyWordBaseBelongToParticle(wordBaseForms)) {
                     continue;
                 }
-                lemmaSet.addAll(luceneMorphology.getNormalForms(word));
+                lemmaSet.addAll(morphology().getNormalForms(word));
             }
         }
         return lemmaSet;
@@ -103,7 +180,7 @@ public class LemmaFinder {
     }
 
     private boolean isCorrectWordForm(String word) {
-        List<String> wordInfo = luceneMorphology.getMorphInfo(word);
+        List<String> wordInfo = morphology().getMorphInfo(word);
         for (String morphInfo : wordInfo) {
             if (morphInfo.matches(WORD_TYPE_REGEX)) {
                 return false;
@@ -116,7 +193,14 @@ public class LemmaFinder {
         if (word.isBlank()) {
             return "";
         }
-        List<String> normalForms = luceneMorphology.getNormalForms(word);
+        int form = dictionary == null ? -1 : dictionary.find(word);
+        if (form >= 0) {
+            return dictionary.lemmaCount(form) == 0 ? word : dictionary.lemma(form, 0);
+        }
+        if (isComplete()) {
+            return word;
+        }
+        List<String> normalForms = morphology().getNormalForms(word);
         return normalForms.isEmpty() ? word : normalForms.get(0);
     }
 
@@ -2,24 +2,63 @@ package searchengine.utils;
 
 import org.apache.lucene.morphology.LuceneMorphology;
 import org.apache.lucene.morphology.english.EnglishLuceneMorphology;
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 
 public class LemmaFinderEn {
-    public final LuceneMorphology luceneMorphology;
     private static final String WORD_TYPE_REGEX = "\\W\\w&&[^a-zA-Z\\s]";
     private static final String[] particlesNames = new String[]{"PREP", "CONJ", "ARTICLE"};
 
+    // Заранее посчитанные леммы; слова, которых в нём нет, разбирает морфология
+    private static volatile LemmaDictionary defaultDictionary;
+    private final LemmaDictionary dictionary;
+
+    // Словари морфологии загружаются долго, а разбор слов потокобезопасен: морфология одна на приложение
+    // и загружается при первом слове, которого нет в словаре лемм. С полным словарём она не нужна вовсе
+    private static volatile LuceneMorphology morphology;
+
+    private static volatile LemmaFinderEn instance;
+
     public static LemmaFinderEn getInstance() throws IOException {
-        LuceneMorphology morphology= new EnglishLuceneMorphology();
-        return new LemmaFinderEn(morphology);
+        LemmaFinderEn finder = instance;
+        if (finder == null) {
+            synchronized (LemmaFinderEn.class) {
+                if (instance == null) {
+                    instance = new LemmaFinderEn(defaultDictionary);
+                }
+                finder = instance;
+            }
+        }
+        return finder;
+    }
+
+    public static synchronized void setDictionary(LemmaDictionary dictionary) {
+        defaultDictionary = dictionary;
+        instance = new LemmaFinderEn(dictionary);
+    }
+
+    public static LuceneMorphology morphology() {
+        LuceneMorphology loaded = morphology;
+        if (loaded == null) {
+            synchronized (LemmaFinderEn.class) {
+                if (morphology == null) {
+                    try {
+                        morphology = new EnglishLuceneMorphology();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Не удалось загрузить морфологию", e);
+                    }
+                }
+                loaded = morphology;
+            }
+        }
+        return loaded;
     }
 
-    private LemmaFinderEn(LuceneMorphology luceneMorphology) {
-        this.luceneMorphology = luceneMorphology;
+    private LemmaFinderEn(LemmaDictionary dictionary) {
+        this.dictionary = dictionary;
     }
 
     private LemmaFinderEn(){
@@ -29,53 +68,92 @@ public class LemmaFinderEn {
     public Map<String, Integer> collectLemmas(String url) {
         Document elements;
         try {
-            elements = Jsoup.connect(url)
-                    .userAgent("Mozilla").get();
+            PageFetcher.Response response = PageFetcher.getInstance().fetchHtml(url, Map.of(), 0);
+            if (!response.isSuccess()) {
+                throw new IOException("HTTP " + response.getCode() + " для " + url);
+            }
+            elements = response.parse();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
-        String text = elements.text();
+        return collectLemmasFromText(elements.text());
+    }
 
-        String[] words = arrayContainsEnglishWords(text);
-        HashMap<String, Integer> lemmas = new HashMap<>();
+    public Map<String, Integer> collectLemmasFromText(String text) {
+        return collectLemmaIds(text).toMap();
+    }
 
-        for (String word : words) {
-            if (word.isBlank()) {
-                continue;
-            }
+    // Подсчёт лемм текста по номерам из общего словаря LemmaIds
+    public LemmaCounts collectLemmaIds(String text) {
+        return LemmaCounter.count(arrayContainsEnglishWords(text), this::lemmaId);
+    }
 
-            List<String> wordBaseForms = luceneMorphology.getMorphInfo(word);
-            if (anyWordBaseBelongToParticle(wordBaseForms)) {
-                continue;
-            }
+    // Номер леммы слова (в нижнем регистре) в LemmaIds или -1, если слово не учитывается
+    int lemmaId(String word) {
+        String lemma = lemmaToCount(word);
+        return lemma == null ? -1 : LemmaIds.id(lemma);
+    }
 
-            List<String> normalForms = luceneMorphology.getNormalForms(word);
-            if (normalForms.isEmpty()) {
-                continue;
-            }
+    // Лемма, под которой слово учитывается в индексе, или null для служебных и неразобранных слов
+    private String lemmaToCount(String word) {
+        if (word.isBlank()) {
+            return null;
+        }
 
-            String normalWord = normalForms.get(normalForms.size() - 1);
+        int form = dictionary == null ? -1 : dictionary.find(word);
+        if (form >= 0) {
+            return dictionary.isParticle(form) || dictionary.lemmaCount(form) == 0
+                    ? null : dictionary.lemma(form, dictionary.lemmaCount(form) - 1);
+        }
 
-            if (lemmas.containsKey(normalWord)) {
-                lemmas.put(normalWord, lemmas.get(normalWord) + 1);
-            } else {
-                lemmas.put(normalWord, 1);
-            }
+        // Полный словарь содержит все слова морфологии: слова нет и там, оно само себе лемма
+        if (isComplete()) {
+            return word;
+        }
+
+        List<String> wordBaseForms = morphology().getMorphInfo(word);
+        if (anyWordBaseBelongToParticle(wordBaseForms)) {
+            return null;
         }
 
-        return lemmas;
+        List<String> normalForms = morphology().getNormalForms(word);
+        return normalForms.isEmpty() ? null : normalForms.get(normalForms.size() - 1);
+    }
+
+    // Слово - служебная часть речи
+    public boolean isParticle(String word) {
+        int form = dictionary == null ? -1 : dictionary.find(word);
+        if (form >= 0) {
+            return dictionary.isParticle(form);
+        }
+        return !isComplete() && anyWordBaseBelongToParticle(morphology().getMorphInfo(word));
+    }
+
+    private boolean isComplete() {
+        return dictionary != null && dictionary.isComplete();
     }
 
     public Set<String> getLemmaSet(String text) {
         String[] textArray = arrayContainsEnglishWords(text);
         Set<String> lemmaSet = new HashSet<>();
         for (String word : textArray) {
-            if (!word.isEmpty() && isCorrectWordForm(word)) {
-                List<String> wordBaseForms = luceneMorphology.getMorphInfo(word);
+            int form = dictionary == null || word.isEmpty() ? -1 : dictionary.find(word);
+            if (form >= 0) {
+                if (!dictionary.isParticle(form)) {
+                    for (int i = 0; i < dictionary.lemmaCount(form); i++) {
+                        lemmaSet.add(dictionary.lemma(form, i));
+                    }
+                }
+                continue;
+            }
+            if (!word.isEmpty() && isComplete()) {
+                lemmaSet.add(word);
+            } else if (!word.isEmpty() && isCorrectWordForm(word)) {
+                List<String> wordBaseForms = morphology().getMorphInfo(word);
                 if (anyWordBaseBelongToParticle(wordBaseForms)) {
                     continue;
                 }
-                lemmaSet.addAll(luceneMorphology.getNormalForms(word));
+                lemmaSet.addAll(morphology().getNormalForms(word));
             }
         }
         return lemmaSet;
@@ -102,7 +180,7 @@ public class LemmaFinderEn {
     }
 
     private boolean isCorrectWordForm(String word) {
-        List<String> wordInfo = luceneMorphology.getMorphInfo(word);
+        List<String> wordInfo = morphology().getMorphInfo(word);
         for (String morphInfo : wordInfo) {
             if (morphInfo.matches(WORD_TYPE_REGEX)) {
                 return false;
@@ -114,7 +192,14 @@ public class LemmaFinderEn {
         if (word.isBlank()) {
             return "";
         }
-        List<String> normalForms = luceneMorphology.getNormalForms(word);
+        int form = dictionary == null ? -1 : dictionary.find(word);
+        if (form >= 0) {
+            return dictionary.lemmaCount(form) == 0 ? word : dictionary.lemma(form, 0);
+        }
+        if (isComplete()) {
+            return word;
+        }
+        List<String> normalForms = morphology().getNormalForms(word);
         return normalForms.isEmpty() ? word : normalForms.get(0);
     }
 
@@ -0,0 +1,111 @@
+package searchengine.utils;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Общий для всего приложения словарь лемм: каждой лемме - плотный номер 0, 1, 2...
+ * Номера живут только в памяти процесса (с id строк таблицы lemma не совпадают): при запуске словарь
+ * заполняется леммами из БД, при индексации дополняется новыми, а леммы, которых в индексе больше нет,
+ * выбрасываются из него {@link #retainAll}. Подсчёт лемм, множества лемм запроса и проверка
+ * принадлежности слова запросу работают с номерами - массивами int и BitSet.
+ */
+public class LemmaIds {
+
+    private static final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private static volatile String[] lemmas = new String[1024];
+    private static int size;
+    // Номера выброшенных лемм; новые леммы получают их раньше, чем номера после size
+    private static int[] free = new int[0];
+    private static int freeCount;
+
+    private LemmaIds() {
+
+    }
+
+    /**
+     * Номер леммы; новая лемма получает следующий свободный номер.
+     */
+    public static int id(String lemma) {
+        Integer id = ids.get(lemma);
+        return id != null ? id : register(lemma);
+    }
+
+    /**
+     * Номер леммы или -1, если такой леммы ещё не было.
+     */
+    public static int find(String lemma) {
+        Integer id = ids.get(lemma);
+        return id == null ? -1 : id;
+    }
+
+    public static String lemma(int id) {
+        return lemmas[id];
+    }
+
+    public static synchronized int size() {
+        return size;
+    }
+
+    public static void load(Collection<String> lemmas) {
+        lemmas.forEach(LemmaIds::id);
+    }
+
+    /**
+     * Выбрасывает из словаря леммы, которых нет в kept, - например, оставшиеся от удалённых поколений сайтов;
+     * возвращает число выброшенных. Номера оставшихся лемм не меняются, освободившиеся достанутся новым леммам.
+     * Вызывать можно, только когда номеров выбрасываемых лемм никто не держит, то есть не идёт индексация.
+     */
+    public static synchronized int retainAll(Collection<String> kept) {
+        Set<String> retained = kept instanceof Set<String> set ? set : new HashSet<>(kept);
+        String[] current = lemmas;
+        int removed = 0;
+        for (int id = 0; id < size; id++) {
+            String lemma = current[id];
+            if (lemma != null && !retained.contains(lemma)) {
+                ids.remove(lemma);
+                current[id] = null;
+                if (freeCount == free.length) {
+                    free = Arrays.copyOf(free, Math.max(16, freeCount * 2));
+                }
+                free[freeCount++] = id;
+                removed++;
+            }
+        }
+        lemmas = current;
+        return removed;
+    }
+
+    /**
+     * Множество номеров лемм из набора (леммы, которых ещё не было, регистрируются).
+     */
+    public static BitSet idSet(Collection<String> lemmas) {
+        BitSet set = new BitSet();
+        for (String lemma : lemmas) {
+            set.set(id(lemma));
+        }
+        return set;
+    }
+
+    private static synchronized int register(String lemma) {
+        Integer existing = ids.get(lemma);
+        if (existing != null) {
+            return existing;
+        }
+        int id = freeCount > 0 ? free[--freeCount] : size++;
+        String[] current = lemmas;
+        if (id == current.length) {
+            current = Arrays.copyOf(current, id * 2);
+        }
+        current[id] = lemma;
+        // Массив публикуется до номера: увидевший номер увидит и строку
+        lemmas = current;
+        ids.put(lemma, id);
+        return id;
+    }
+}
@@ -0,0 +1,413 @@
+package searchengine.utils;
+
+import lombok.Builder;
+import lombok.Getter;
+import org.jsoup.Jsoup;
+import org.jsoup.UnsupportedMimeTypeException;
+import org.jsoup.nodes.Document;
+import org.jsoup.parser.Parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.net.ssl.SSLHandshakeException;
+
+/**
+ * Общий для приложения HTTP-клиент: обход, карты сайта и загрузка страниц для лемматизации идут через него.
+ * <p>
+ * Один {@link HttpClient} держит пул соединений: соединения с хостом переиспользуются (keep-alive),
+ * для https по ALPN выбирается HTTP/2, и запросы к одному хосту идут по одному соединению.
+ * Ответы запрашиваются сжатыми (gzip, deflate) и распаковываются здесь; разбор HTML остаётся за Jsoup.
+ * Таймаут ответа ограничивает весь запрос вместе с телом, как раньше таймаут Jsoup.
+ * <p>
+ * Тип и размер проверяются до чтения тела: ответ с неподходящим Content-Type или с Content-Length
+ * больше предела обрывается сразу, а тело без длины (chunked) - как только полученные байты превысят предел.
+ * Предел действует и на распакованное тело.
+ * <p>
+ * Временные ошибки (таймауты, обрыв соединения, ответы 429, 502, 503, 504) повторяются с экспоненциальной
+ * паузой и случайным разбросом; Retry-After сервера учитывается. Неудачи считает {@link HostCircuitBreaker}:
+ * хост, который раз за разом не отвечает, ставится на паузу, и запросы к нему сразу завершаются ошибкой.
+ */
+public final class PageFetcher {
+
+    private static final Pattern CHARSET = Pattern.compile("(?i)charset=\"?([^\\s;\"]+)");
+    // Те же типы, что принимал Jsoup: HTML и XML
+    private static final Pattern HTML_TYPE = Pattern.compile("(?i)(text/\\S+|application/(\\S+\\+)?xml)(;.*)?");
+
+    private static final Set<Integer> RETRYABLE_CODES = Set.of(429, 502, 503, 504);
+
+    private static volatile PageFetcher instance = new PageFetcher(Options.builder().build());
+
+    private final HttpClient client;
+    private final Options options;
+    private final HostCircuitBreaker breaker;
+
+    public PageFetcher(Options options) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(options.getConnectTimeout())
+                .build();
+        this.options = options;
+        this.breaker = new HostCircuitBreaker(options.getBreakerFailureThreshold(), options.getBreakerOpenMillis());
+    }
+
+    /**
+     * Настройки загрузчика; значения по умолчанию совпадают с fetcher.* в application.yaml.
+     */
+    @Getter
+    @Builder
+    public static class Options {
+        @Builder.Default
+        private final Duration connectTimeout = Duration.ofSeconds(10);
+        @Builder.Default
+        private final Duration readTimeout = Duration.ofSeconds(10);
+        @Builder.Default
+        private final String userAgent = "Mozilla";
+        // Предел тела ответа, если сайт не задал свой
+        @Builder.Default
+        private final long maxBodySize = 10L * 1024 * 1024;
+        // Повторы временных ошибок: число повторов и пауза перед первым, удваивается до maxRetryDelayMillis
+        @Builder.Default
+        private final int maxRetries = 3;
+        @Builder.Default
+        private final long retryDelayMillis = 500;
+        @Builder.Default
+        private final long maxRetryDelayMillis = 10_000;
+        // Предохранитель: после стольких неудач подряд хост встаёт на паузу breakerOpenMillis
+        @Builder.Default
+        private final int breakerFailureThreshold = 5;
+        @Builder.Default
+        private final long breakerOpenMillis = 30_000;
+    }
+
+    public static PageFetcher getInstance() {
+        return instance;
+    }
+
+    public static void setInstance(PageFetcher fetcher) {
+        instance = fetcher;
+    }
+
+    /**
+     * Загружает адрес с любым типом содержимого. Ответы с ошибкой возвращаются как есть, с кодом.
+     * maxBodySize - предел тела в байтах; 0 - предел по умолчанию.
+     */
+    public Response fetch(String url, Map<String, String> headers, long maxBodySize) throws IOException {
+        return sendWithRetries(url, headers, false, maxBodySize);
+    }
+
+    /**
+     * Загружает HTML или XML; на другой тип успешного ответа бросает {@link UnsupportedMimeTypeException},
+     * не скачивая тело. На тело больше maxBodySize (0 - предел по умолчанию) бросает {@link BodyTooLargeException}.
+     */
+    public Response fetchHtml(String url, Map<String, String> headers, long maxBodySize) throws IOException {
+        return sendWithRetries(url, headers, true, maxBodySize);
+    }
+
+    /**
+     * Сколько миллисекунд хост адреса ещё на паузе после череды неудач (0 - запросы разрешены).
+     */
+    public long hostPausedFor(String url) {
+        return breaker.pausedFor(host(url));
+    }
+
+    // Ответ с таким кодом стоит запросить ещё раз позже
+    public static boolean isRetryable(int code) {
+        return RETRYABLE_CODES.contains(code);
+    }
+
+    private Response sendWithRetries(String url, Map<String, String> headers, boolean htmlOnly, long maxBodySize)
+            throws IOException {
+        String host = host(url);
+        for (int attempt = 0; ; attempt++) {
+            breaker.acquire(host, url);
+            Response response;
+            try {
+                response = send(url, headers, htmlOnly, maxBodySize);
+            } catch (UnsupportedMimeTypeException | BodyTooLargeException | MalformedURLException e) {
+                // Сервер ответил, или ошибка в самом адресе: хост исправен, повтор ничего не даст
+                breaker.onSuccess(host);
+                throw e;
+            } catch (SocketTimeoutException e) {
+                breaker.onFailure(host);
+                if (attempt >= options.getMaxRetries()) throw e;
+                backOff(attempt, null, url);
+                continue;
+            } catch (InterruptedIOException e) {
+                throw e;
+            } catch (IOException e) {
+                breaker.onFailure(host);
+                if (!isTransient(e) || attempt >= options.getMaxRetries()) throw e;
+                backOff(attempt, null, url);
+                continue;
+            }
+
+            if (!isRetryable(response.getCode())) {
+                breaker.onSuccess(host);
+                return response;
+            }
+            breaker.onFailure(host);
+            if (attempt >= options.getMaxRetries()) {
+                return response;
+            }
+            backOff(attempt, response.header("Retry-After"), url);
+        }
+    }
+
+    // Неизвестный хост и ошибки сертификата повтором не исправить
+    private static boolean isTransient(IOException e) {
+        return !(e instanceof UnknownHostException) && !(e instanceof SSLHandshakeException);
+    }
+
+    // Пауза перед повтором: delay * 2^attempt со случайным разбросом в половину (чтобы потоки не повторяли
+    // запросы хором), но не меньше Retry-After в секундах и не больше maxRetryDelayMillis
+    private void backOff(int attempt, String retryAfter, String url) throws InterruptedIOException {
+        long delay = Math.min(options.getMaxRetryDelayMillis(), options.getRetryDelayMillis() << Math.min(attempt, 20));
+        long pause = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+        if (retryAfter != null && retryAfter.trim().matches("\\d{1,6}")) {
+            pause = Math.max(pause, Math.min(options.getMaxRetryDelayMillis(), Long.parseLong(retryAfter.trim()) * 1000));
+        }
+        try {
+            Thread.sleep(pause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Загрузка прервана: " + url);
+        }
+    }
+
+    private static String host(String url) {
+        try {
+            String host = URI.create(url.trim()).getHost();
+            return host == null ? "" : host.toLowerCase(Locale.ROOT);
+        } catch (IllegalArgumentException e) {
+            return "";
+        }
+    }
+
+    private Response send(String url, Map<String, String> headers, boolean htmlOnly, long maxBodySize)
+            throws IOException {
+        long limit = maxBodySize > 0 ? maxBodySize : options.getMaxBodySize();
+        Duration readTimeout = options.getReadTimeout();
+        URI uri;
+        try {
+            uri = URI.create(url.trim());
+        } catch (IllegalArgumentException e) {
+            throw new MalformedURLException("Некорректный адрес: " + url);
+        }
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                .timeout(readTimeout)
+                // По открытому http HTTP/2 не согласуется, а Upgrade-запросы понимают не все серверы
+                .version("https".equalsIgnoreCase(uri.getScheme())
+                        ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .header("User-Agent", options.getUserAgent())
+                .header("Accept-Encoding", "gzip, deflate");
+        headers.forEach(request::header);
+
+        CompletableFuture<HttpResponse<byte[]>> future =
+                client.sendAsync(request.GET().build(), info -> bodyHandler(info, url, htmlOnly, limit));
+        try {
+            HttpResponse<byte[]> response = future.get(readTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            return new Response(response, decode(response, url, limit));
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new SocketTimeoutException("Таймаут загрузки " + url);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Загрузка прервана: " + url);
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause(), url);
+        }
+    }
+
+    private static HttpResponse.BodySubscriber<byte[]> bodyHandler(HttpResponse.ResponseInfo info,
+                                                                   String url, boolean htmlOnly, long limit) {
+        String contentType = info.headers().firstValue("Content-Type").orElse(null);
+        boolean success = info.statusCode() >= 200 && info.statusCode() < 300;
+        // Исключение из обработчика обрывает обмен: тело не скачивается, соединение закрывается
+        if (htmlOnly && success && contentType != null && !HTML_TYPE.matcher(contentType).matches()) {
+            throw new UncheckedIOException(new UnsupportedMimeTypeException(
+                    "Unhandled content type", contentType, url));
+        }
+        if (info.headers().firstValueAsLong("Content-Length").orElse(0) > limit) {
+            throw new UncheckedIOException(new BodyTooLargeException(url, limit));
+        }
+        return new LimitedBodySubscriber(url, limit);
+    }
+
+    // HttpClient оборачивает исключения обработчика тела, поэтому ищем исходное по цепочке причин
+    private static IOException unwrap(Throwable cause, String url) {
+        for (Throwable current = cause; current != null; current = current.getCause()) {
+            if (current instanceof UnsupportedMimeTypeException || current instanceof BodyTooLargeException) {
+                return (IOException) current;
+            }
+            if (current instanceof HttpTimeoutException) {
+                return new SocketTimeoutException("Таймаут загрузки " + url);
+            }
+        }
+        if (cause instanceof UncheckedIOException unchecked) {
+            return unchecked.getCause();
+        }
+        if (cause instanceof IOException ioException) {
+            return ioException;
+        }
+        return new IOException("Ошибка загрузки " + url, cause);
+    }
+
+    private static byte[] decode(HttpResponse<byte[]> response, String url, long limit) throws IOException {
+        String encoding = response.headers().firstValue("Content-Encoding").orElse("")
+                .trim().toLowerCase(Locale.ROOT);
+        byte[] body = response.body();
+        if (body.length == 0) {
+            return body;
+        }
+        return switch (encoding) {
+            case "gzip", "x-gzip" -> inflate(new GZIPInputStream(new ByteArrayInputStream(body)), url, limit);
+            case "deflate" -> inflate(new InflaterInputStream(new ByteArrayInputStream(body)), url, limit);
+            default -> body;
+        };
+    }
+
+    // Распаковка с тем же пределом, что и у загрузки: сжатое тело может развернуться во много раз больше
+    static byte[] inflate(InputStream in, String url, long limit) throws IOException {
+        try (in) {
+            byte[] body = in.readNBytes((int) Math.min(limit + 1, Integer.MAX_VALUE - 8));
+            if (body.length > limit) {
+                throw new BodyTooLargeException(url, limit);
+            }
+            return body;
+        }
+    }
+
+    // Тело в массив байт с обрывом загрузки, как только получено больше limit байт
+    private static final class LimitedBodySubscriber implements HttpResponse.BodySubscriber<byte[]> {
+        private final HttpResponse.BodySubscriber<byte[]> body = HttpResponse.BodySubscribers.ofByteArray();
+        private final String url;
+        private final long limit;
+        private Flow.Subscription subscription;
+        private long received;
+        private boolean aborted;
+
+        private LimitedBodySubscriber(String url, long limit) {
+            this.url = url;
+            this.limit = limit;
+        }
+
+        @Override
+        public CompletionStage<byte[]> getBody() {
+            return body.getBody();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            body.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            if (aborted) return;
+            for (ByteBuffer buffer : buffers) {
+                received += buffer.remaining();
+            }
+            if (received > limit) {
+                aborted = true;
+                subscription.cancel();
+                body.onError(new BodyTooLargeException(url, limit));
+                return;
+            }
+            body.onNext(buffers);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if (!aborted) body.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            if (!aborted) body.onComplete();
+        }
+    }
+
+    /**
+     * Ответ сервера с распакованным телом.
+     */
+    @Getter
+    public static final class Response {
+        private final int code;
+        // Адрес после перенаправлений - база для относительных ссылок
+        private final URI uri;
+        private final String contentType;
+        private final byte[] body;
+        private final HttpHeaders headers;
+
+        private Response(HttpResponse<byte[]> response, byte[] body) {
+            this.code = response.statusCode();
+            this.uri = response.uri();
+            this.headers = response.headers();
+            this.contentType = headers.firstValue("Content-Type").orElse(null);
+            this.body = body;
+        }
+
+        public String header(String name) {
+            return headers.firstValue(name).orElse(null);
+        }
+
+        public boolean isSuccess() {
+            return code >= 200 && code < 300;
+        }
+
+        // Кодировка из Content-Type; если её нет, Jsoup определит её по BOM и meta
+        private String charset() {
+            if (contentType == null) return null;
+            Matcher matcher = CHARSET.matcher(contentType);
+            if (!matcher.find()) return null;
+            try {
+                return Charset.isSupported(matcher.group(1)) ? matcher.group(1) : null;
+            } catch (IllegalCharsetNameException e) {
+                return null;
+            }
+        }
+
+        public Document parse() throws IOException {
+            return Jsoup.parse(new ByteArrayInputStream(body), charset(), uri.toString());
+        }
+
+        public Document parseXml() throws IOException {
+            return Jsoup.parse(new ByteArrayInputStream(body), charset(), uri.toString(), Parser.xmlParser());
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package searchengine.utils;
+
+import org.apache.lucene.morphology.WrongCharaterException;
+
+import java.util.*;
+
+/**
+ * Поиск в тексте страницы форм искомых лемм, идущих подряд (фразовое совпадение).
+ */
+public class PhraseMatcher {
+
+    private PhraseMatcher() {
+
+    }
+
+    // Определяем позиции найденных лемм в тексте
+    public static HashMap<Integer, String> lemmasPositions(String content, LemmaFinder lemmaFinderRu,
+                                                           LemmaFinderEn lemmaFinderEn, BitSet lemmaIds) {
+        HashMap<Integer, String> positionOfLemma = new HashMap<>();
+
+        // Разбиваем контент на слова и нормализуем
+        String[] words = content.split("\s+");
+
+        for (String word : words) {
+            String normalizedWord = TextUtils.normalizeWord(word);
+            int index = content.indexOf(word);
+
+            if (TextUtils.isRussian(normalizedWord)) {
+                String lemma = lemmaFinderRu.getLemma(normalizedWord);
+                if (containsLemma(lemmaIds, lemma)) {
+                    while (index != -1) {
+                        positionOfLemma.put(index, normalizedWord);
+                        index = content.indexOf(word, index + 1);
+                    }
+                }
+            } else if (TextUtils.isEnglish(normalizedWord)) {
+                String lemma = lemmaFinderEn.getLemma(normalizedWord);
+                if (containsLemma(lemmaIds, lemma)) {
+                    while (index != -1) {
+                        positionOfLemma.put(index, normalizedWord);
+                        index = content.indexOf(word, index + 1);
+                    }
+                }
+            }
+        }
+        return positionOfLemma;
+    }
+
+    // Лемма входит в множество номеров лемм запроса (LemmaIds)
+    public static boolean containsLemma(BitSet lemmaIds, String lemma) {
+        int id = LemmaIds.find(lemma);
+        return id >= 0 && lemmaIds.get(id);
+    }
+
+    // Определяем есть ли последовательности найденных форм лемм
+    public static boolean hasConsecutiveWords(Map<Integer, String> positionsOfLemmas, String content,
+                                              LemmaFinder lemmaFinder, LemmaFinderEn lemmaFinderEn) {
+        List<Integer> positions = new ArrayList<>(positionsOfLemmas.keySet());
+        Collections.sort(positions);
+
+        int consecutiveCount = 1;
+
+        for (int i = 1; i < positions.size(); i++) {
+            int prevPos = positions.get(i - 1);
+            int currPos = positions.get(i);
+
+            // Находим реальную длину слова в тексте
+            int wordEnd = prevPos;
+            while (wordEnd < content.length() && !Character.isWhitespace(content.charAt(wordEnd))) {
+                wordEnd++;
+            }
+
+            int begin = wordEnd;
+            int end = currPos;
+
+            if (begin >= end) continue;
+
+            String betweenText = content.substring(begin, end).trim();
+            if (betweenText.isEmpty()) {
+                consecutiveCount++;
+            } else {
+                // Убираем кавычки
+                betweenText = betweenText.replaceAll("[\"«»„“]", "").trim();
+
+                if (betweenText.isEmpty()) {
+                    consecutiveCount++;
+                    continue;
+                }
+
+                String[] wordsBetween = betweenText.split("\\s+");
+                boolean allParticlesOrQuotes = true;
+
+                for (String word : wordsBetween) {
+                    if (word.isBlank()) continue;
+
+                    word = TextUtils.normalizeWord(word);
+                    if (word.isBlank()) continue;
+
+                    try {
+                        boolean isRussian = TextUtils.isRussian(word);
+                        boolean isParticle = isRussian
+                                ? lemmaFinder.isParticle(word)
+                                : lemmaFinderEn.isParticle(word);
+
+                        if (!isParticle) {
+                            allParticlesOrQuotes = false;
+                            break;
+                        }
+                    } catch (ArrayIndexOutOfBoundsException | WrongCharaterException e) {
+                        // Слово, которое морфология не разбирает, фразу не прерывает
+                    }
+                }
+
+                if (allParticlesOrQuotes) {
+                    consecutiveCount++;
+                } else {
+                    consecutiveCount = 1;
+                }
+            }
+
+            if (consecutiveCount >= 3) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
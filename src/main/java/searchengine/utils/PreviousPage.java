@@ -0,0 +1,27 @@
+package searchengine.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Страница того же адреса в видимом поколении сайта при переиндексации. По ней обход решает,
+ * загружать ли страницу заново: валидаторы идут в условный запрос, время индексации сравнивается
+ * с lastmod из карты сайта.
+ */
+@Getter
+@AllArgsConstructor
+public class PreviousPage {
+
+    private final String etag;
+
+    private final String lastModified;
+
+    private final LocalDateTime indexedAt;
+
+    // Не изменилась с прошлой индексации по данным карты сайта
+    public boolean isIndexedSince(LocalDateTime lastmod) {
+        return lastmod != null && indexedAt != null && !indexedAt.isBefore(lastmod);
+    }
+}
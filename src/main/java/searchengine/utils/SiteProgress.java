@@ -0,0 +1,125 @@
+package searchengine.utils;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Счётчики хода индексации одного сайта. Обновляются потоками обхода и сохранения,
+ * читаются при каждом опросе прогресса, поэтому всё построено на атомиках без блокировок.
+ */
+public class SiteProgress {
+
+    // Перцентили времени загрузки считаются по последним LATENCY_WINDOW загрузкам
+    private static final int LATENCY_WINDOW = 1024;
+
+    @Getter
+    private final String url;
+    @Getter
+    private final long startedAt = System.currentTimeMillis();
+
+    private final AtomicLong discovered = new AtomicLong();
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong fetched = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong indexed = new AtomicLong();
+
+    private final AtomicLongArray latencies = new AtomicLongArray(LATENCY_WINDOW);
+    private final AtomicInteger latencyCount = new AtomicInteger();
+
+    private volatile long finishedAt;
+
+    public SiteProgress(String url) {
+        this.url = url;
+    }
+
+    public void onDiscovered() {
+        discovered.incrementAndGet();
+    }
+
+    public void onFetched(long latencyMillis, boolean success) {
+        fetched.incrementAndGet();
+        if (!success) failed.incrementAndGet();
+        int slot = latencyCount.getAndIncrement() % LATENCY_WINDOW;
+        latencies.set(slot, latencyMillis);
+    }
+
+    // Страница не загружена (таймаут, не HTML) и в очередь не попадёт
+    public void onSkipped(boolean failure) {
+        skipped.incrementAndGet();
+        if (failure) failed.incrementAndGet();
+    }
+
+    // Страница отложена до повторного прохода: остаётся в числе найденных, но ещё не обработанных
+    public void onDeferred(boolean failure) {
+        if (failure) failed.incrementAndGet();
+    }
+
+    public void onQueued() {
+        queued.incrementAndGet();
+    }
+
+    public void onIndexed() {
+        queued.decrementAndGet();
+        indexed.incrementAndGet();
+    }
+
+    public void finish() {
+        finishedAt = System.currentTimeMillis();
+    }
+
+    public boolean isRunning() {
+        return finishedAt == 0;
+    }
+
+    public long getDiscovered() {
+        return discovered.get();
+    }
+
+    public long getQueued() {
+        return queued.get();
+    }
+
+    public long getFetched() {
+        return fetched.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getIndexed() {
+        return indexed.get();
+    }
+
+    public double getPagesPerSecond() {
+        long end = isRunning() ? System.currentTimeMillis() : finishedAt;
+        double seconds = Math.max(end - startedAt, 1) / 1000.0;
+        return indexed.get() / seconds;
+    }
+
+    // Оценка оставшегося времени по уже найденным ссылкам; пока обход идёт, она только растёт
+    public Long getEtaSeconds() {
+        if (!isRunning()) return 0L;
+        double rate = getPagesPerSecond();
+        if (rate == 0) return null;
+        long remaining = Math.max(discovered.get() - indexed.get() - skipped.get(), 0);
+        return Math.round(remaining / rate);
+    }
+
+    public long getLatencyPercentile(double percentile) {
+        int count = Math.min(latencyCount.get(), LATENCY_WINDOW);
+        if (count == 0) return 0;
+        long[] values = new long[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = latencies.get(i);
+        }
+        Arrays.sort(values);
+        int index = (int) Math.ceil(percentile / 100 * count) - 1;
+        return values[Math.max(index, 0)];
+    }
+}
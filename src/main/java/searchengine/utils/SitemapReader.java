@@ -0,0 +1,151 @@
+package searchengine.utils;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Список страниц сайта из карт сайта: адреса Sitemap из robots.txt (или /sitemap.xml, если их там нет),
+ * вложенные индексы карт, а также RSS- и Atom-ленты, указанные вместо карты.
+ * Для каждой страницы возвращается дата изменения (lastmod, pubDate, updated), если она известна.
+ */
+public class SitemapReader {
+
+    // Ограничения на случай огромных или зацикленных карт сайта
+    private static final int MAX_SITEMAPS = 100;
+    private static final int MAX_URLS = 50_000;
+    // Предел размера карты сайта по протоколу sitemaps.org
+    private static final long MAX_SITEMAP_BYTES = 50L * 1024 * 1024;
+
+    private final Map<String, LocalDateTime> urls = new LinkedHashMap<>();
+    private final Set<String> visitedSitemaps = new HashSet<>();
+
+    private SitemapReader() {
+
+    }
+
+    /**
+     * Адреса страниц сайта с датой изменения (null, если дата не указана).
+     * Ошибки загрузки отдельных карт пропускаются: карта сайта лишь дополняет обход по ссылкам.
+     */
+    public static Map<String, LocalDateTime> read(String siteUrl) {
+        SitemapReader reader = new SitemapReader();
+        String root = siteUrl.endsWith("/") ? siteUrl.substring(0, siteUrl.length() - 1) : siteUrl;
+
+        List<String> sitemaps = reader.sitemapsFromRobots(root);
+        if (sitemaps.isEmpty()) {
+            sitemaps = List.of(root + "/sitemap.xml");
+        }
+        sitemaps.forEach(reader::readSitemap);
+        return reader.urls;
+    }
+
+    private List<String> sitemapsFromRobots(String root) {
+        List<String> sitemaps = new ArrayList<>();
+        try {
+            PageFetcher.Response response = PageFetcher.getInstance().fetch(root + "/robots.txt", Map.of(), 0);
+            if (!response.isSuccess()) {
+                return sitemaps;
+            }
+            String robots = new String(response.getBody(), StandardCharsets.UTF_8);
+            for (String line : robots.split("\\r?\\n")) {
+                String trimmed = line.trim();
+                if (trimmed.regionMatches(true, 0, "sitemap:", 0, "sitemap:".length())) {
+                    sitemaps.add(trimmed.substring("sitemap:".length()).trim());
+                }
+            }
+        } catch (IOException e) {
+            // Нет robots.txt - попробуем /sitemap.xml
+        }
+        return sitemaps;
+    }
+
+    private void readSitemap(String sitemapUrl) {
+        if (urls.size() >= MAX_URLS || visitedSitemaps.size() >= MAX_SITEMAPS || !visitedSitemaps.add(sitemapUrl)) {
+            return;
+        }
+
+        Document document;
+        try {
+            document = parse(sitemapUrl);
+        } catch (IOException e) {
+            return;
+        }
+
+        // Индекс карт сайта
+        for (Element sitemap : document.getElementsByTag("sitemap")) {
+            String loc = sitemap.getElementsByTag("loc").text();
+            if (!loc.isEmpty()) readSitemap(loc);
+        }
+        // Карта сайта
+        for (Element url : document.getElementsByTag("url")) {
+            add(url.getElementsByTag("loc").text(), url.getElementsByTag("lastmod").text());
+        }
+        // RSS
+        for (Element item : document.getElementsByTag("item")) {
+            add(item.getElementsByTag("link").text(), item.getElementsByTag("pubDate").text());
+        }
+        // Atom
+        for (Element entry : document.getElementsByTag("entry")) {
+            Element link = entry.getElementsByTag("link").first();
+            add(link == null ? "" : link.attr("href"), entry.getElementsByTag("updated").text());
+        }
+    }
+
+    private void add(String url, String lastmod) {
+        String key = url.trim();
+        if (key.isEmpty() || urls.size() >= MAX_URLS) return;
+        // Адрес может встретиться в нескольких картах: оставляем самую позднюю дату
+        LocalDateTime date = parseDate(lastmod);
+        LocalDateTime known = urls.get(key);
+        if (!urls.containsKey(key) || (date != null && (known == null || date.isAfter(known)))) {
+            urls.put(key, date);
+        }
+    }
+
+    private static Document parse(String sitemapUrl) throws IOException {
+        PageFetcher.Response response = PageFetcher.getInstance().fetch(sitemapUrl, Map.of(), MAX_SITEMAP_BYTES);
+        if (!response.isSuccess()) {
+            throw new IOException("HTTP " + response.getCode() + " для " + sitemapUrl);
+        }
+        byte[] body = response.getBody();
+        // Файл .gz; если сервер отдал его с Content-Encoding: gzip, клиент уже распаковал тело
+        if (body.length < 2 || (body[0] & 0xFF) != 0x1F || (body[1] & 0xFF) != 0x8B) {
+            return response.parseXml();
+        }
+        byte[] xml = PageFetcher.inflate(new GZIPInputStream(new ByteArrayInputStream(body)), sitemapUrl, MAX_SITEMAP_BYTES);
+        return Jsoup.parse(new ByteArrayInputStream(xml), StandardCharsets.UTF_8.name(), sitemapUrl, Parser.xmlParser());
+    }
+
+    // W3C Datetime из карт сайта и Atom, RFC 1123 из RSS
+    static LocalDateTime parseDate(String value) {
+        String date = value.trim();
+        if (date.isEmpty()) return null;
+        try {
+            if (date.length() == 10) {
+                return LocalDate.parse(date).atStartOfDay();
+            }
+            if (Character.isDigit(date.charAt(0))) {
+                return OffsetDateTime.parse(date).atZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+            }
+            return ZonedDateTime.parse(date, DateTimeFormatter.RFC_1123_DATE_TIME)
+                    .withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package searchengine.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Построение сниппетов: предложения текста страницы, содержащие искомые слова,
+ * с подсветкой совпадений и обрезкой длинных предложений вокруг первого совпадения.
+ */
+public class SnippetBuilder {
+
+    private static final int MAX_SNIPPET_LENGTH = 150;
+
+    private SnippetBuilder() {
+
+    }
+
+    public static List<String> buildSnippets(String text, Set<String> matchingWords) {
+        String[] sentences = text.split("(?<=[.!?])\\s+"); // разбиваем на предложения
+        List<String> snippetList = new ArrayList<>();
+
+        for (String sentence : sentences) {
+            String lowerCaseSentence = sentence.toLowerCase();
+            boolean containsMatch = matchingWords.stream()
+                    .anyMatch(word -> lowerCaseSentence.contains(word.toLowerCase()));
+
+            if (containsMatch) {
+                String highlighted = highlightWords(sentence, matchingWords);
+
+                if (highlighted.length() > MAX_SNIPPET_LENGTH) {
+                    highlighted = trimAroundFirstMatch(highlighted, matchingWords, MAX_SNIPPET_LENGTH);
+                }
+
+                snippetList.add(highlighted);
+            }
+        }
+        return snippetList;
+    }
+
+    private static String highlightWords(String sentence, Set<String> matchingWords) {
+        String highlighted = sentence;
+        for (String word : matchingWords) {
+            highlighted = highlighted.replaceAll("(?i)(" + Pattern.quote(word) + ")", "<b>$1</b>");
+        }
+        return highlighted;
+    }
+
+    private static String trimAroundFirstMatch(String text, Set<String> matchingWords, int maxLength) {
+        String lowerText = text.toLowerCase();
+        int firstMatchIndex = findFirstMatchIndex(text, matchingWords);
+
+        if (firstMatchIndex == -1) {
+            return text.length() <= maxLength ? text : text.substring(0, maxLength) + "...";
+        }
+
+        int start = Math.max(0, firstMatchIndex - maxLength / 2);
+        int end = Math.min(text.length(), start + maxLength);
+
+        String trimmed = text.substring(start, end);
+
+        // Обрезаем аккуратно по словам
+        trimmed = adjustToWordBoundaries(trimmed);
+
+        if (start > 0 || end < text.length()) {
+            trimmed = "..." + trimmed + "...";
+        }
+
+        return trimmed;
+    }
+
+    private static int findFirstMatchIndex(String text, Set<String> matchingWords) {
+        String lowerText = text.toLowerCase();
+        int minIndex = Integer.MAX_VALUE;
+        for (String word : matchingWords) {
+            int idx = lowerText.indexOf(word.toLowerCase());
+            if (idx != -1 && idx < minIndex) {
+                minIndex = idx;
+            }
+        }
+        return minIndex == Integer.MAX_VALUE ? -1 : minIndex;
+    }
+
+    private static String adjustToWordBoundaries(String text) {
+        // Убираем обрыв слов с краёв
+        int start = 0;
+        int end = text.length();
+
+        while (start < end && !Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        while (end > start && !Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+
+        return text.substring(start, end).trim();
+    }
+}
@@ -1,5 +1,9 @@
 package searchengine.utils;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.regex.Pattern;
 
 public class TextUtils {
@@ -37,4 +41,14 @@ public class TextUtils {
         return snippet.matches(".*[.!?]$") ? snippet : snippet + "...";
     }
 
+    // SHA-256 текста в шестнадцатеричном виде, используется для поиска дубликатов страниц
+    public static String contentHash(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
 }
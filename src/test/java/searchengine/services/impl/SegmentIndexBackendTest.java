@@ -0,0 +1,115 @@
+package searchengine.services.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import searchengine.config.IndexSettings;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.utils.LemmaCounter;
+import searchengine.utils.LemmaCounts;
+import searchengine.utils.LemmaIds;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentIndexBackendTest {
+
+    @TempDir
+    Path directory;
+
+    private SegmentIndexBackend backend;
+
+    @AfterEach
+    void tearDown() {
+        if (backend != null) {
+            backend.close();
+        }
+    }
+
+    @Test
+    void addAndRemoveBeforeFlush() throws IOException {
+        backend = open(100);
+        backend.addPage(page(1, 1), lemmas("кот", "кот", "дом"));
+        backend.addPage(page(2, 1), lemmas("кот"));
+        backend.addPage(page(3, 2), lemmas("кот", "мышь"));
+
+        assertArrayEquals(new int[]{1, 2}, backend.pageIds("кот", List.of(1)));
+        assertArrayEquals(new int[]{1, 2, 3}, backend.pageIds("кот", List.of(1, 2)));
+        assertEquals(Map.of(1, 2L, 2, 2L), backend.lemmaCounts());
+        assertEquals(Map.of(1, 2f, 2, 1f), backend.rankSums(List.of("кот"), List.of(1), new int[]{1, 2, 3}));
+
+        backend.removePage(page(2, 1));
+        assertArrayEquals(new int[]{1}, backend.pageIds("кот", List.of(1)));
+        assertEquals(Map.of(1, 2L, 2, 2L), backend.lemmaCounts());
+
+        backend.removePage(page(1, 1));
+        assertArrayEquals(new int[0], backend.pageIds("дом", List.of(1, 2)));
+        assertEquals(Map.of(2, 2L), backend.lemmaCounts());
+    }
+
+    @Test
+    void flushMergeAndReopen() throws Exception {
+        // Каждая страница с двумя леммами сбрасывается сегментом, два сегмента сливаются в один
+        backend = open(2);
+        backend.addPage(page(1, 1), lemmas("кот", "дом"));
+        backend.addPage(page(2, 1), lemmas("кот", "мышь"));
+        awaitSegments(1);
+
+        backend.removePage(page(1, 1));
+        backend.addPage(page(3, 2), lemmas("дом"));
+        assertArrayEquals(new int[]{2}, backend.pageIds("кот", List.of(1, 2)));
+        assertArrayEquals(new int[]{3}, backend.pageIds("дом", List.of(1, 2)));
+        assertEquals(Map.of(1, 2L, 2, 1L), backend.lemmaCounts());
+
+        // Буфер с удалением и новой страницей записывается при остановке
+        backend.close();
+        backend = open(2);
+        assertEquals(2, Files.readAllLines(directory.resolve("segments")).size());
+        assertArrayEquals(new int[]{2}, backend.pageIds("кот", List.of(1, 2)));
+        assertArrayEquals(new int[]{3}, backend.pageIds("дом", List.of(1, 2)));
+        assertArrayEquals(new int[]{2}, backend.pageIds("мышь", List.of(1)));
+        assertEquals(Map.of(1, 2L, 2, 1L), backend.lemmaCounts());
+        assertEquals(Map.of(1, 1L, 2, 1L), backend.pageCounts(List.of(1, 2)));
+    }
+
+    private SegmentIndexBackend open(int flushPostings) throws IOException {
+        IndexSettings settings = new IndexSettings();
+        settings.setSegmentDir(directory.toString());
+        settings.setFlushPostings(flushPostings);
+        settings.setFlushIntervalSeconds(3600);
+        settings.setMergeFactor(2);
+        SegmentIndexBackend opened = new SegmentIndexBackend(settings);
+        opened.open();
+        return opened;
+    }
+
+    // Слияние идёт в фоне; список сегментов заменяется, когда оно закончено
+    private void awaitSegments(int count) throws Exception {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (Files.readAllLines(directory.resolve("segments")).size() != count) {
+            assertTrue(System.currentTimeMillis() < deadline, "Сегменты не слились");
+            Thread.sleep(20);
+        }
+    }
+
+    private static Page page(int id, int siteId) {
+        Site site = new Site();
+        site.setId(siteId);
+        Page page = new Page();
+        page.setId(id);
+        page.setSite(site);
+        return page;
+    }
+
+    private static LemmaCounts lemmas(String... words) {
+        return LemmaCounter.count(words, LemmaIds::id);
+    }
+}
@@ -0,0 +1,59 @@
+package searchengine.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IndexSegmentTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void writeAndOpen() throws IOException {
+        SortedMap<String, IndexSegment.Postings> postings = new TreeMap<>();
+        IndexSegment.Postings cat = new IndexSegment.Postings();
+        // Постинги не по порядку: write сортирует их по странице
+        cat.add(3, 20, 1);
+        cat.add(1, 10, 2);
+        postings.put("кот", cat);
+        IndexSegment.Postings house = new IndexSegment.Postings();
+        house.add(1, 10, 5);
+        postings.put("дом", house);
+        Path file = directory.resolve("0000000001.seg");
+
+        IndexSegment.write(file, postings, new int[]{1, 3}, new int[]{10, 20}, new int[]{7});
+        IndexSegment segment = IndexSegment.open(file);
+
+        assertEquals(Files.size(file), segment.size());
+        assertEquals(2, segment.lemmaCount());
+        assertEquals(3, segment.postingCount());
+        assertEquals("дом", segment.lemma(0));
+        assertEquals("кот", segment.lemma(1));
+        assertEquals(0, segment.find("дом"));
+        assertEquals(-1, segment.find("мышь"));
+
+        int index = segment.find("кот");
+        assertEquals(2, segment.postingEnd(index) - segment.postingStart(index));
+        int first = segment.postingStart(index);
+        assertEquals(1, segment.page(first));
+        assertEquals(10, segment.site(first));
+        assertEquals(2f, segment.rank(first));
+        assertEquals(3, segment.page(first + 1));
+        assertEquals(20, segment.site(first + 1));
+        assertEquals(1f, segment.rank(first + 1));
+
+        assertEquals(2, segment.pageCount());
+        assertEquals(3, segment.pageId(1));
+        assertEquals(20, segment.pageSite(1));
+        assertEquals(1, segment.deleteCount());
+        assertEquals(7, segment.deleted(0));
+    }
+}
@@ -0,0 +1,92 @@
+package searchengine.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IndexSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    private final List<IndexSnapshot.SiteEntry> sites = List.of(
+            new IndexSnapshot.SiteEntry(10, "https://a.ru", "A", "INDEXED", "2026-01-01T00:00", null),
+            new IndexSnapshot.SiteEntry(20, "https://b.ru", "B", "FAILED", "2026-01-02T00:00", "Ошибка"));
+    private final List<IndexSnapshot.PageEntry> pages = List.of(
+            new IndexSnapshot.PageEntry(1, 10, "/", 200),
+            new IndexSnapshot.PageEntry(5, 20, "/about", 200),
+            new IndexSnapshot.PageEntry(300, 10, "/news", 200));
+
+    @Test
+    void writeAndRead() throws IOException {
+        Path file = directory.resolve("index.snapshot");
+        try (IndexSnapshot.Writer writer = IndexSnapshot.create(file, 42, sites, pages)) {
+            writer.add("дом", postings(1, 10, 3));
+            // Страницы не по порядку: Writer сортирует их
+            IndexSegment.Postings cat = postings(300, 10, 1);
+            cat.add(5, 20, 2);
+            writer.add("кот", cat);
+            writer.commit();
+            assertEquals(2, writer.getLemmaCount());
+            assertEquals(3, writer.getPostingCount());
+        }
+
+        try (IndexSnapshot.Reader reader = IndexSnapshot.open(file)) {
+            assertEquals(42, reader.getCreatedAt());
+            assertEquals(2, reader.getSites().size());
+            assertNull(reader.getSites().get(0).getLastError());
+            assertEquals("Ошибка", reader.getSites().get(1).getLastError());
+            assertEquals("https://b.ru", reader.getSites().get(1).getUrl());
+            assertEquals(3, reader.getPages().size());
+            assertEquals(300, reader.getPages().get(2).getId());
+            assertEquals("/news", reader.getPages().get(2).getPath());
+            assertEquals(2, reader.getLemmaCount());
+
+            assertTrue(reader.next());
+            assertEquals("дом", reader.getLemma());
+            assertEquals(1, reader.getPostings().size());
+            assertEquals(3f, reader.getPostings().rank(0));
+
+            assertTrue(reader.next());
+            assertEquals("кот", reader.getLemma());
+            IndexSegment.Postings read = reader.getPostings();
+            assertEquals(2, read.size());
+            assertEquals(5, read.page(0));
+            assertEquals(20, read.site(0));
+            assertEquals(2f, read.rank(0));
+            assertEquals(300, read.page(1));
+            assertEquals(10, read.site(1));
+
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    void lemmasMustAscend() throws IOException {
+        Path file = directory.resolve("index.snapshot");
+        try (IndexSnapshot.Writer writer = IndexSnapshot.create(file, 42, sites, pages)) {
+            writer.add("кот", postings(1, 10, 1));
+            assertThrows(IllegalArgumentException.class, () -> writer.add("дом", postings(1, 10, 1)));
+            assertThrows(IllegalArgumentException.class, () -> writer.add("кот", postings(1, 10, 1)));
+        }
+        // Без commit снимок не появляется
+        assertFalse(Files.exists(file));
+        assertFalse(Files.exists(directory.resolve("index.snapshot.tmp")));
+    }
+
+    private static IndexSegment.Postings postings(int page, int site, float rank) {
+        IndexSegment.Postings postings = new IndexSegment.Postings();
+        postings.add(page, site, rank);
+        return postings;
+    }
+}
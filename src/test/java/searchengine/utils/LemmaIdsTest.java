@@ -0,0 +1,26 @@
+package searchengine.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LemmaIdsTest {
+
+    @Test
+    void retainAllKeepsIdsAndReusesFreed() {
+        int kept = LemmaIds.id("липа");
+        int dropped = LemmaIds.id("ясень");
+
+        assertTrue(LemmaIds.retainAll(List.of("липа")) >= 1);
+        assertEquals(-1, LemmaIds.find("ясень"));
+        assertEquals(kept, LemmaIds.id("липа"));
+        assertEquals("липа", LemmaIds.lemma(kept));
+
+        // Последний освободившийся номер достаётся новой лемме
+        assertEquals(dropped, LemmaIds.id("клён"));
+        assertEquals("клён", LemmaIds.lemma(dropped));
+    }
+}